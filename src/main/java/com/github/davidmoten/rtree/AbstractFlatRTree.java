@@ -0,0 +1,422 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * A read-only copy of an {@link RTree} in {@link FlatLayout} order. Holds the
+ * entries on the heap and implements searching the layout, leaving how the
+ * node mbrs, child offsets and entry mbrs are stored to subclasses. See
+ * {@link FlatRTree} and {@link OffHeapRTree}.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public abstract class AbstractFlatRTree<T, S extends Geometry> {
+
+    final Entry<T, S>[] entries;
+    final int numNodes;
+    final int firstLeaf;
+
+    AbstractFlatRTree(FlatLayout<T, S> layout) {
+        this.entries = layout.entries;
+        this.numNodes = layout.numNodes;
+        this.firstLeaf = layout.firstLeaf;
+    }
+
+    /**
+     * Returns coordinate <code>k</code> (0 to 3 for x1, y1, x2, y2) of the mbr
+     * of the node.
+     */
+    abstract float nodeMbr(int node, int k);
+
+    /**
+     * Returns the index of the first child (or entry if the node is a leaf)
+     * of the node.
+     */
+    abstract int childrenStart(int node);
+
+    /**
+     * Returns one more than the index of the last child (or entry if the node
+     * is a leaf) of the node.
+     */
+    abstract int childrenEnd(int node);
+
+    /**
+     * Returns coordinate <code>k</code> (0 to 3 for x1, y1, x2, y2) of the mbr
+     * of the entry.
+     */
+    abstract float entryMbr(int entry, int k);
+
+    /**
+     * Returns the number of entries in the tree.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns true if and only if the tree has no entries.
+     *
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return entries.length == 0;
+    }
+
+    /**
+     * Returns the entries whose geometry intersects the given rectangle.
+     *
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @return entries that intersect with the rectangle r
+     */
+    public Observable<Entry<T, S>> search(Rectangle r) {
+        return search(RTree.intersects(r));
+    }
+
+    /**
+     * Returns the entries whose geometry intersects the given point.
+     *
+     * @param p
+     *            point to check intersection with the entry geometry
+     * @return entries that intersect with the point p
+     */
+    public Observable<Entry<T, S>> search(Point p) {
+        return search(p.mbr());
+    }
+
+    /**
+     * Returns the entries whose geometry is strictly less than maxDistance from
+     * the given rectangle.
+     *
+     * @param r
+     *            rectangle to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from rectangle r
+     * @return the sequence of matching entries
+     */
+    public Observable<Entry<T, S>> search(Rectangle r, double maxDistance) {
+        return search(new RTree.WithinDistanceCondition(r, maxDistance));
+    }
+
+    /**
+     * Returns the entries whose geometry is strictly less than maxDistance from
+     * the given point.
+     *
+     * @param p
+     *            point to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from point p
+     * @return the sequence of matching entries
+     */
+    public Observable<Entry<T, S>> search(Point p, double maxDistance) {
+        return search(p.mbr(), maxDistance);
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given rectangle where
+     * the entries are strictly less than a given maximum distance from the
+     * rectangle.
+     *
+     * @param r
+     *            rectangle
+     * @param maxDistance
+     *            max distance of returned entries from the rectangle
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(final Rectangle r, final double maxDistance,
+            final int maxCount) {
+        if (numNodes == 0)
+            return Observable.empty();
+        else
+            // best-first search as for RTree.nearest
+            return Observable.from(new Iterable<Entry<T, S>>() {
+                @Override
+                public Iterator<Entry<T, S>> iterator() {
+                    return new NearestIterator(r, maxDistance, maxCount);
+                }
+            });
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given rectangle no
+     * matter how far away they are.
+     *
+     * @param r
+     *            rectangle
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(Rectangle r, int maxCount) {
+        return nearest(r, Double.POSITIVE_INFINITY, maxCount);
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point where the
+     * entries are strictly less than a given maximum distance from the point.
+     *
+     * @param p
+     *            point
+     * @param maxDistance
+     *            max distance of returned entries from the point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(Point p, double maxDistance, int maxCount) {
+        return nearest(p.mbr(), maxDistance, maxCount);
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point no matter
+     * how far away they are.
+     *
+     * @param p
+     *            point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(Point p, int maxCount) {
+        return nearest(p.mbr(), maxCount);
+    }
+
+    /**
+     * Returns all entries in the tree.
+     *
+     * @return all entries
+     */
+    public Observable<Entry<T, S>> entries() {
+        return Observable.from(entries);
+    }
+
+    Observable<Entry<T, S>> search(final Func1<? super Geometry, Boolean> condition) {
+        if (numNodes == 0)
+            return Observable.empty();
+        else
+            // Observable.from supports backpressure
+            return Observable.from(new Iterable<Entry<T, S>>() {
+                @Override
+                public Iterator<Entry<T, S>> iterator() {
+                    return new SearchIterator(condition);
+                }
+            });
+    }
+
+    /**
+     * Depth-first search that keeps its position as a stack of node indexes.
+     * Not thread safe.
+     */
+    private final class SearchIterator implements Iterator<Entry<T, S>> {
+
+        private final Func1<? super Geometry, Boolean> condition;
+        // null if condition is not a BoundsCondition
+        private final BoundsCondition bounds;
+        private int[] nodeStack = new int[8];
+        private int[] positionStack = new int[8];
+        private int depth;
+        private Entry<T, S> next;
+
+        SearchIterator(Func1<? super Geometry, Boolean> condition) {
+            this.condition = condition;
+            this.bounds = condition instanceof BoundsCondition ? (BoundsCondition) condition
+                    : null;
+            if (nodeMatches(0))
+                push(0);
+            next = computeNext();
+        }
+
+        private void push(int node) {
+            if (depth == nodeStack.length) {
+                int[] a = new int[depth * 2];
+                System.arraycopy(nodeStack, 0, a, 0, depth);
+                nodeStack = a;
+                int[] b = new int[depth * 2];
+                System.arraycopy(positionStack, 0, b, 0, depth);
+                positionStack = b;
+            }
+            nodeStack[depth] = node;
+            positionStack[depth] = childrenStart(node);
+            depth++;
+        }
+
+        private boolean nodeMatches(int node) {
+            final float x1 = nodeMbr(node, 0);
+            final float y1 = nodeMbr(node, 1);
+            final float x2 = nodeMbr(node, 2);
+            final float y2 = nodeMbr(node, 3);
+            if (bounds != null)
+                return bounds.test(x1, y1, x2, y2);
+            else
+                return condition.call(Rectangle.create(x1, y1, x2, y2));
+        }
+
+        private boolean entryMatches(int entry) {
+            if (bounds != null
+                    && !bounds.test(entryMbr(entry, 0), entryMbr(entry, 1), entryMbr(entry, 2),
+                            entryMbr(entry, 3)))
+                return false;
+            return condition.call(entries[entry].geometry());
+        }
+
+        private Entry<T, S> computeNext() {
+            while (depth > 0) {
+                final int node = nodeStack[depth - 1];
+                final int position = positionStack[depth - 1];
+                if (position == childrenEnd(node))
+                    depth--;
+                else {
+                    positionStack[depth - 1] = position + 1;
+                    if (node >= firstLeaf) {
+                        if (entryMatches(position))
+                            return entries[position];
+                    } else if (nodeMatches(position))
+                        push(position);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<T, S> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            final Entry<T, S> result = next;
+            next = computeNext();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Best-first nearest neighbour search with the nodes and entries waiting
+     * in one priority queue ordered by distance, as {@link NearestIterator}
+     * does for an {@link RTree}. Not thread safe.
+     */
+    private final class NearestIterator implements Iterator<Entry<T, S>> {
+
+        private final Rectangle r;
+        private final double maxDistance;
+        private final PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(16,
+                CANDIDATE_COMPARATOR);
+        private int remaining;
+        private Entry<T, S> next;
+
+        NearestIterator(Rectangle r, double maxDistance, int maxCount) {
+            this.r = r;
+            this.maxDistance = maxDistance;
+            this.remaining = maxCount;
+            offer(nodeDistance(0), 0, false);
+        }
+
+        private double nodeDistance(int node) {
+            // same arithmetic as Rectangle.distance
+            final double dx = Math.max(0,
+                    Math.max(nodeMbr(node, 0), r.x1()) - Math.min(nodeMbr(node, 2), r.x2()));
+            final double dy = Math.max(0,
+                    Math.max(nodeMbr(node, 1), r.y1()) - Math.min(nodeMbr(node, 3), r.y2()));
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+
+        private void offer(double distance, int index, boolean isEntry) {
+            if (distance < maxDistance)
+                queue.offer(new Candidate(distance, index, isEntry));
+        }
+
+        private Entry<T, S> computeNext() {
+            if (remaining <= 0)
+                return null;
+            Candidate c;
+            while ((c = queue.poll()) != null) {
+                if (c.isEntry) {
+                    remaining--;
+                    if (remaining == 0)
+                        queue.clear();
+                    return entries[c.index];
+                } else if (c.index >= firstLeaf) {
+                    for (int i = childrenStart(c.index); i < childrenEnd(c.index); i++)
+                        offer(entries[i].geometry().distance(r), i, true);
+                } else {
+                    for (int i = childrenStart(c.index); i < childrenEnd(c.index); i++)
+                        offer(nodeDistance(i), i, false);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                next = computeNext();
+            return next != null;
+        }
+
+        @Override
+        public Entry<T, S> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            final Entry<T, S> result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Candidate {
+        final double distance;
+        // a node index or an entry index
+        final int index;
+        final boolean isEntry;
+
+        Candidate(double distance, int index, boolean isEntry) {
+            this.distance = distance;
+            this.index = index;
+            this.isEntry = isEntry;
+        }
+    }
+
+    private static final Comparator<Candidate> CANDIDATE_COMPARATOR = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            int result = Double.compare(a.distance, b.distance);
+            if (result != 0)
+                return result;
+            else if (a.isEntry == b.isEntry)
+                return 0;
+            else
+                // entries before nodes at the same distance
+                return a.isEntry ? -1 : 1;
+        }
+    };
+
+}
@@ -0,0 +1,44 @@
+package com.github.davidmoten.rtree;
+
+/**
+ * An associative and commutative reduction of entry values that an
+ * {@link RTree} can cache for each of its nodes so that
+ * {@link RTree#aggregate(com.github.davidmoten.rtree.geometry.Rectangle, Aggregation)}
+ * only visits the nodes on the boundary of the query. See {@link Aggregations}
+ * for sum, min and max.
+ *
+ * @param <T>
+ *            entry value type
+ * @param <A>
+ *            aggregate type
+ */
+public interface Aggregation<T, A> {
+
+    /**
+     * Returns the aggregate of no values.
+     * 
+     * @return the identity of {@link #combine(Object, Object)}
+     */
+    A empty();
+
+    /**
+     * Returns the aggregate of a single entry value.
+     * 
+     * @param value
+     *            entry value
+     * @return aggregate of the value
+     */
+    A of(T value);
+
+    /**
+     * Returns the aggregate of the values aggregated by a and b. Must be
+     * associative and commutative.
+     * 
+     * @param a
+     *            an aggregate
+     * @param b
+     *            another aggregate
+     * @return the combined aggregate
+     */
+    A combine(A a, A b);
+}
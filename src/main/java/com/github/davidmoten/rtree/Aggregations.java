@@ -0,0 +1,102 @@
+package com.github.davidmoten.rtree;
+
+/**
+ * Standard {@link Aggregation}s of numeric entry values.
+ */
+public final class Aggregations {
+
+    private Aggregations() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the sum of the values (0 if none).
+     * 
+     * @param <T>
+     *            entry value type
+     * @return sum aggregation
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Number> Aggregation<T, Double> sum() {
+        return (Aggregation<T, Double>) SUM;
+    }
+
+    /**
+     * Returns the minimum of the values (positive infinity if none).
+     * 
+     * @param <T>
+     *            entry value type
+     * @return min aggregation
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Number> Aggregation<T, Double> min() {
+        return (Aggregation<T, Double>) MIN;
+    }
+
+    /**
+     * Returns the maximum of the values (negative infinity if none).
+     * 
+     * @param <T>
+     *            entry value type
+     * @return max aggregation
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Number> Aggregation<T, Double> max() {
+        return (Aggregation<T, Double>) MAX;
+    }
+
+    private static final Aggregation<Number, Double> SUM = new Aggregation<Number, Double>() {
+
+        @Override
+        public Double empty() {
+            return 0.0;
+        }
+
+        @Override
+        public Double of(Number value) {
+            return value.doubleValue();
+        }
+
+        @Override
+        public Double combine(Double a, Double b) {
+            return a + b;
+        }
+    };
+
+    private static final Aggregation<Number, Double> MIN = new Aggregation<Number, Double>() {
+
+        @Override
+        public Double empty() {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Double of(Number value) {
+            return value.doubleValue();
+        }
+
+        @Override
+        public Double combine(Double a, Double b) {
+            return Math.min(a, b);
+        }
+    };
+
+    private static final Aggregation<Number, Double> MAX = new Aggregation<Number, Double>() {
+
+        @Override
+        public Double empty() {
+            return Double.NEGATIVE_INFINITY;
+        }
+
+        @Override
+        public Double of(Number value) {
+            return value.doubleValue();
+        }
+
+        @Override
+        public Double combine(Double a, Double b) {
+            return Math.max(a, b);
+        }
+    };
+
+}
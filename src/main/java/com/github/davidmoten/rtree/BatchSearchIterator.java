@@ -0,0 +1,152 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * Searches a tree for many rectangles in one depth-first traversal. Each
+ * level of the traversal stack carries the indexes of the queries that
+ * intersect the mbr of its node so a child is only visited (once) if some
+ * query intersects it and only those queries are tested against its
+ * children. The index arrays of each level are kept and reused as the
+ * traversal moves on to other nodes. Not thread safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class BatchSearchIterator<T, S extends Geometry> implements Iterator<IndexedEntry<T, S>> {
+
+    private final Rectangle[] queries;
+    private Node<T, S>[] nodes;
+    private int[] positions;
+    // active[d][0..activeCounts[d]-1] are the queries intersecting nodes[d]
+    private int[][] active;
+    private int[] activeCounts;
+    private int depth;
+    // position in the active queries of the current leaf entry
+    private int queryPosition;
+    private IndexedEntry<T, S> next;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    BatchSearchIterator(Optional<? extends Node<T, S>> root, Rectangle[] queries) {
+        this.queries = queries;
+        this.nodes = new Node[8];
+        this.positions = new int[8];
+        this.active = new int[8][];
+        this.activeCounts = new int[8];
+        if (root.isPresent())
+            pushIfIntersects(root.get(), null, queries.length);
+        next = computeNext();
+    }
+
+    /**
+     * Pushes the node with the subset of the parent queries that intersect
+     * it, unless there are none.
+     * 
+     * @param node
+     *            node to push
+     * @param parentQueries
+     *            query indexes of the parent or null for all queries
+     * @param parentCount
+     *            number of parent query indexes
+     * @return true if the node was pushed
+     */
+    private boolean pushIfIntersects(Node<T, S> node, int[] parentQueries, int parentCount) {
+        if (depth == nodes.length)
+            grow();
+        if (active[depth] == null)
+            active[depth] = new int[queries.length];
+        final int[] qs = active[depth];
+        final Rectangle mbr = node.geometry().mbr();
+        int count = 0;
+        for (int k = 0; k < parentCount; k++) {
+            final int q = parentQueries == null ? k : parentQueries[k];
+            if (mbr.intersects(queries[q]))
+                qs[count++] = q;
+        }
+        if (count == 0)
+            return false;
+        nodes[depth] = node;
+        positions[depth] = 0;
+        activeCounts[depth] = count;
+        depth++;
+        queryPosition = 0;
+        return true;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void grow() {
+        final int n = nodes.length * 2;
+        Node<T, S>[] nodes2 = new Node[n];
+        System.arraycopy(nodes, 0, nodes2, 0, depth);
+        nodes = nodes2;
+        int[] positions2 = new int[n];
+        System.arraycopy(positions, 0, positions2, 0, depth);
+        positions = positions2;
+        int[][] active2 = new int[n][];
+        System.arraycopy(active, 0, active2, 0, depth);
+        active = active2;
+        int[] activeCounts2 = new int[n];
+        System.arraycopy(activeCounts, 0, activeCounts2, 0, depth);
+        activeCounts = activeCounts2;
+    }
+
+    private IndexedEntry<T, S> computeNext() {
+        while (depth > 0) {
+            final int d = depth - 1;
+            final Node<T, S> node = nodes[d];
+            final int n = node.count();
+            final int[] qs = active[d];
+            final int qn = activeCounts[d];
+            int i = positions[d];
+            if (node instanceof Leaf) {
+                final Leaf<T, S> leaf = (Leaf<T, S>) node;
+                for (; i < n; i++) {
+                    for (int k = queryPosition; k < qn; k++)
+                        if (leaf.intersects(i, queries[qs[k]])) {
+                            positions[d] = i;
+                            queryPosition = k + 1;
+                            return new IndexedEntry<T, S>(qs[k], leaf.entries().get(i));
+                        }
+                    queryPosition = 0;
+                }
+                nodes[--depth] = null;
+            } else {
+                final NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+                while (i < n && !pushIfIntersects(nonLeaf.children().get(i), qs, qn))
+                    i++;
+                // if a child was pushed resume this node after it
+                positions[d] = i + 1;
+                if (i == n)
+                    nodes[--depth] = null;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public IndexedEntry<T, S> next() {
+        if (next == null)
+            throw new NoSuchElementException();
+        final IndexedEntry<T, S> result = next;
+        next = computeNext();
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
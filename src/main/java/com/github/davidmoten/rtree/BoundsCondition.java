@@ -0,0 +1,28 @@
+package com.github.davidmoten.rtree;
+
+/**
+ * A search condition that can also be evaluated against the coordinates of a
+ * minimum bounding rectangle without creating or dereferencing any objects.
+ * Leaves use it to reject entries using their stored mbr coordinates before
+ * touching the entries themselves.
+ */
+interface BoundsCondition {
+
+    /**
+     * Returns false only if no geometry with the given mbr could satisfy the
+     * condition. A geometry whose mbr passes is still tested exactly.
+     * 
+     * @param x1
+     *            minimum x of mbr
+     * @param y1
+     *            minimum y of mbr
+     * @param x2
+     *            maximum x of mbr
+     * @param y2
+     *            maximum y of mbr
+     * @return false if the condition cannot be satisfied by a geometry within
+     *         the mbr
+     */
+    boolean test(float x1, float y1, float x2, float y2);
+
+}
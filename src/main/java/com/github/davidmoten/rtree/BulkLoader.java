@@ -0,0 +1,265 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Ordering;
+
+/**
+ * Builds R-tree nodes bottom-up from a known set of entries rather than by
+ * repeated insertion.
+ */
+final class BulkLoader {
+
+    private BulkLoader() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the root node of a tree containing the given entries. The entries
+     * are grouped into leaves by the packer and then the leaves (and
+     * subsequently each level of non-leaf nodes) are grouped into parents by
+     * the packer until only one node remains.
+     *
+     * @param entries
+     *            entries to load, must not be empty
+     * @param context
+     *            determines the max number of children per node
+     * @param packer
+     *            groups items into nodes
+     * @return the root node
+     */
+    static <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries, Context context,
+            Packer packer) {
+        Preconditions.checkArgument(!entries.isEmpty());
+        List<Node<T, S>> nodes = createNodes(entries, context, packer, Leaf.<T, S> factory(context));
+        return loadParents(nodes, context, packer);
+    }
+
+    /**
+     * Returns the root node of a tree containing the given entries using
+     * <code>threads</code> threads. The entries are sorted by x in parallel
+     * and cut into one vertical slab per thread, each slab is packed into
+     * leaves (and then parents) independently and the levels are stitched
+     * together so that all leaves remain at the same depth. Once a level is
+     * too small to be worth sharing between the threads the remaining levels
+     * are packed on the calling thread.
+     *
+     * <p>
+     * A {@link PackerHilbert} is not sliced: the entries are sorted by their
+     * Hilbert index in parallel and grouped into leaves exactly as the
+     * sequential load groups them, the leaves are created in parallel and the
+     * (much smaller) upper levels are packed on the calling thread, so the
+     * tree is the same as the one built by {@link #load(List, Context, Packer)}.
+     *
+     * @param entries
+     *            entries to load, must not be empty
+     * @param context
+     *            determines the max number of children per node
+     * @param packer
+     *            groups items into nodes
+     * @param threads
+     *            number of threads to use
+     * @return the root node
+     */
+    static <T, S extends Geometry> Node<T, S> load(List<Entry<T, S>> entries, Context context,
+            Packer packer, int threads) {
+        if (threads <= 1)
+            return load(entries, context, packer);
+        Preconditions.checkArgument(!entries.isEmpty());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            if (packer instanceof PackerHilbert)
+                return loadParents(createHilbertLeaves(entries, context, executor, threads),
+                        context, packer);
+            List<Entry<T, S>> sorted = sort(entries, PackerStr.INCREASING_X_CENTRE, executor,
+                    threads);
+            List<Node<T, S>> nodes = createNodes(sorted, context, packer,
+                    Leaf.<T, S> factory(context), executor, threads);
+            while (nodes.size() > threads * context.maxChildren())
+                nodes = createNodes(nodes, context, packer, NonLeaf.<T, S> factory(context),
+                        executor, threads);
+            return loadParents(nodes, context, packer);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the leaves that {@link PackerHilbert} packs the entries into,
+     * computing the Hilbert indexes, sorting and creating the leaves in
+     * parallel.
+     */
+    private static <T, S extends Geometry> List<Node<T, S>> createHilbertLeaves(
+            List<Entry<T, S>> entries, final Context context, ExecutorService executor,
+            int threads) {
+        final Rectangle bounds = Util.mbr(entries);
+        List<Future<List<PackerHilbert.Keyed<Entry<T, S>>>>> keyFutures = new ArrayList<Future<List<PackerHilbert.Keyed<Entry<T, S>>>>>();
+        for (final List<Entry<T, S>> chunk : Util.partition(entries,
+                ceilDiv(entries.size(), threads)))
+            keyFutures.add(executor.submit(new Callable<List<PackerHilbert.Keyed<Entry<T, S>>>>() {
+                @Override
+                public List<PackerHilbert.Keyed<Entry<T, S>>> call() {
+                    List<PackerHilbert.Keyed<Entry<T, S>>> keyed = new ArrayList<PackerHilbert.Keyed<Entry<T, S>>>(
+                            chunk.size());
+                    for (Entry<T, S> entry : chunk)
+                        keyed.add(PackerHilbert.keyed(entry, bounds));
+                    return keyed;
+                }
+            }));
+        List<PackerHilbert.Keyed<Entry<T, S>>> keyed = new ArrayList<PackerHilbert.Keyed<Entry<T, S>>>(
+                entries.size());
+        for (List<PackerHilbert.Keyed<Entry<T, S>>> list : get(keyFutures))
+            keyed.addAll(list);
+        // the sort is stable like the sequential one so ties stay in order
+        keyed = sort(keyed, Ordering.<PackerHilbert.Keyed<Entry<T, S>>> natural(), executor,
+                threads);
+        final List<Entry<T, S>> sorted = new ArrayList<Entry<T, S>>(keyed.size());
+        for (PackerHilbert.Keyed<Entry<T, S>> k : keyed)
+            sorted.add(k.item);
+        final List<List<Entry<T, S>>> groups = Util.partition(sorted, context.maxChildren());
+        List<Future<List<Node<T, S>>>> futures = new ArrayList<Future<List<Node<T, S>>>>();
+        for (final List<List<Entry<T, S>>> chunk : Util.partition(groups,
+                ceilDiv(groups.size(), threads)))
+            futures.add(executor.submit(new Callable<List<Node<T, S>>>() {
+                @Override
+                public List<Node<T, S>> call() {
+                    final Func1<List<Entry<T, S>>, Node<T, S>> factory = Leaf.factory(context);
+                    List<Node<T, S>> leaves = new ArrayList<Node<T, S>>(chunk.size());
+                    for (List<Entry<T, S>> group : chunk)
+                        leaves.add(factory.call(group));
+                    return leaves;
+                }
+            }));
+        List<Node<T, S>> leaves = new ArrayList<Node<T, S>>(groups.size());
+        for (List<Node<T, S>> list : get(futures))
+            leaves.addAll(list);
+        return leaves;
+    }
+
+    private static <T, S extends Geometry> Node<T, S> loadParents(List<Node<T, S>> nodes,
+            Context context, Packer packer) {
+        while (nodes.size() > 1)
+            nodes = createNodes(nodes, context, packer, NonLeaf.<T, S> factory(context));
+        return nodes.get(0);
+    }
+
+    private static <T, S extends Geometry, R extends HasGeometry> List<Node<T, S>> createNodes(
+            List<R> items, Context context, Packer packer, Func1<List<R>, Node<T, S>> factory) {
+        List<Node<T, S>> nodes = new ArrayList<Node<T, S>>();
+        for (List<R> group : packer.pack(items, context.maxChildren()))
+            nodes.add(factory.call(group));
+        return nodes;
+    }
+
+    private static <T, S extends Geometry, R extends HasGeometry> List<Node<T, S>> createNodes(
+            List<R> items, final Context context, final Packer packer,
+            final Func1<List<R>, Node<T, S>> factory, ExecutorService executor, int threads) {
+        // slabs are a multiple of maxChildren so every slab but the last holds
+        // a whole number of full nodes worth of items. How the packer sizes
+        // the groups within a slab is up to the packer.
+        final int slabSize = roundUp(ceilDiv(items.size(), threads), context.maxChildren());
+        List<Future<List<Node<T, S>>>> futures = new ArrayList<Future<List<Node<T, S>>>>();
+        for (int start = 0; start < items.size(); start += slabSize) {
+            final List<R> slab = items.subList(start, Math.min(items.size(), start + slabSize));
+            futures.add(executor.submit(new Callable<List<Node<T, S>>>() {
+                @Override
+                public List<Node<T, S>> call() {
+                    return createNodes(slab, context, packer, factory);
+                }
+            }));
+        }
+        List<Node<T, S>> nodes = new ArrayList<Node<T, S>>();
+        for (List<Node<T, S>> list : get(futures))
+            nodes.addAll(list);
+        return nodes;
+    }
+
+    /**
+     * Returns a sorted copy of the items. Chunks of the list are sorted
+     * concurrently and then merged pairwise (also concurrently).
+     */
+    private static <T> List<T> sort(List<T> items, final Comparator<? super T> comparator,
+            ExecutorService executor, int threads) {
+        List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>();
+        for (final List<T> chunk : Util.partition(items, ceilDiv(items.size(), threads))) {
+            futures.add(executor.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() {
+                    Collections.sort(chunk, comparator);
+                    return chunk;
+                }
+            }));
+        }
+        List<List<T>> runs = get(futures);
+        while (runs.size() > 1) {
+            futures.clear();
+            for (int i = 0; i < runs.size(); i += 2) {
+                final List<T> a = runs.get(i);
+                final List<T> b = i + 1 < runs.size() ? runs.get(i + 1) : Collections
+                        .<T> emptyList();
+                futures.add(executor.submit(new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() {
+                        return merge(a, b, comparator);
+                    }
+                }));
+            }
+            runs = get(futures);
+        }
+        return runs.get(0);
+    }
+
+    private static <T> List<T> merge(List<T> a, List<T> b, Comparator<? super T> comparator) {
+        List<T> list = new ArrayList<T>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            // take from a on ties so the merge is stable
+            if (comparator.compare(b.get(j), a.get(i)) < 0)
+                list.add(b.get(j++));
+            else
+                list.add(a.get(i++));
+        }
+        list.addAll(a.subList(i, a.size()));
+        list.addAll(b.subList(j, b.size()));
+        return list;
+    }
+
+    private static <T> List<T> get(List<Future<T>> futures) {
+        List<T> results = new ArrayList<T>(futures.size());
+        try {
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+        return results;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    private static int roundUp(int n, int multiple) {
+        return ceilDiv(n, multiple) * multiple;
+    }
+
+}
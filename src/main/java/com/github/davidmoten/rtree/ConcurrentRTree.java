@@ -0,0 +1,210 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * Holds an immutable {@link RTree} that many threads may read and modify
+ * concurrently.
+ *
+ * <p>
+ * Readers call {@link #tree()} to obtain a snapshot without locking and query
+ * the snapshot as normal. Writers queue their change and then one writer at a
+ * time (the committer) applies every queued change to the current tree and
+ * publishes the result. Writers that arrive while a commit is in progress
+ * have their changes applied together in the next commit so that adds
+ * contending for the tree share one batched path copy (see
+ * {@link RTree#add(Iterable)}) rather than one each.
+ *
+ * <p>
+ * Each write method returns once its change has been published. Changes are
+ * applied in the order they were queued. If applying a batch of changes fails
+ * (with any {@link Throwable}) then nothing of the batch is published and its
+ * changes are applied again one at a time, so a change that fails on its own
+ * is thrown to its writer only and the other changes of the batch are still
+ * published.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class ConcurrentRTree<T, S extends Geometry> {
+
+    private final AtomicReference<RTree<T, S>> tree;
+    private final Queue<Change<T, S>> queue = new ConcurrentLinkedQueue<Change<T, S>>();
+    private final Lock commitLock = new ReentrantLock();
+
+    private ConcurrentRTree(RTree<T, S> tree) {
+        this.tree = new AtomicReference<RTree<T, S>>(tree);
+    }
+
+    /**
+     * Returns a new {@link ConcurrentRTree} initially holding the given tree.
+     *
+     * @param tree
+     *            initial tree
+     * @param <T>
+     *            the entry value type
+     * @param <S>
+     *            the entry geometry type
+     * @return a concurrent R-tree
+     */
+    public static <T, S extends Geometry> ConcurrentRTree<T, S> create(RTree<T, S> tree) {
+        Preconditions.checkNotNull(tree);
+        return new ConcurrentRTree<T, S>(tree);
+    }
+
+    /**
+     * Returns the latest published tree. Never blocks.
+     *
+     * @return the current snapshot
+     */
+    public RTree<T, S> tree() {
+        return tree.get();
+    }
+
+    /**
+     * Adds an entry to the tree.
+     *
+     * @param entry
+     *            item to add
+     * @return a snapshot that includes the added entry
+     * @throws RuntimeException
+     *             or {@link Error} if adding this entry to the tree fails, in
+     *             which case the tree is unchanged by it
+     */
+    public RTree<T, S> add(Entry<? extends T, ? extends S> entry) {
+        return submit(new Change<T, S>(entry, true, false));
+    }
+
+    /**
+     * Adds an entry comprised of the given value and Geometry to the tree.
+     *
+     * @param value
+     *            the value of the {@link Entry} to be added
+     * @param geometry
+     *            the geometry of the {@link Entry} to be added
+     * @return a snapshot that includes the added entry
+     */
+    public RTree<T, S> add(T value, S geometry) {
+        return add(Entry.entry(value, geometry));
+    }
+
+    /**
+     * Deletes one or all entries matching the given entry from the tree.
+     *
+     * @param entry
+     *            entry to delete
+     * @param all
+     *            if false deletes one if exists else deletes all
+     * @return a snapshot that reflects the deletion
+     * @throws RuntimeException
+     *             or {@link Error} if deleting this entry from the tree
+     *             fails, in which case the tree is unchanged by it
+     */
+    public RTree<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        return submit(new Change<T, S>(entry, false, all));
+    }
+
+    /**
+     * Deletes one entry matching the given entry from the tree.
+     *
+     * @param entry
+     *            entry to delete
+     * @return a snapshot that reflects the deletion
+     */
+    public RTree<T, S> delete(Entry<? extends T, ? extends S> entry) {
+        return delete(entry, false);
+    }
+
+    private RTree<T, S> submit(Change<T, S> change) {
+        queue.offer(change);
+        commitLock.lock();
+        try {
+            // a previous committer may already have applied our change
+            if (!change.committed)
+                commit();
+            if (change.error != null)
+                throw Throwables.propagate(change.error);
+            return tree.get();
+        } finally {
+            commitLock.unlock();
+        }
+    }
+
+    /**
+     * Applies all queued changes to the current tree and publishes the result.
+     * Must be called holding the commit lock.
+     */
+    private void commit() {
+        final List<Change<T, S>> changes = new ArrayList<Change<T, S>>();
+        Change<T, S> change;
+        while ((change = queue.poll()) != null)
+            changes.add(change);
+        try {
+            tree.set(apply(tree.get(), changes));
+        } catch (Throwable e) {
+            // isolate the failing changes so that the other writers of the
+            // batch are not failed with them
+            for (Change<T, S> c : changes)
+                try {
+                    tree.set(apply(tree.get(), Collections.singletonList(c)));
+                } catch (Throwable e2) {
+                    c.error = e2;
+                }
+        } finally {
+            // the changes have left the queue so their writers must never
+            // find them uncommitted
+            for (Change<T, S> c : changes)
+                c.committed = true;
+        }
+    }
+
+    private static <T, S extends Geometry> RTree<T, S> apply(RTree<T, S> t,
+            List<Change<T, S>> changes) {
+        final List<Entry<T, S>> adds = new ArrayList<Entry<T, S>>();
+        for (Change<T, S> c : changes) {
+            if (c.add)
+                adds.add(c.entry);
+            else {
+                // deletes must see the adds queued before them
+                if (!adds.isEmpty()) {
+                    t = t.add(adds);
+                    adds.clear();
+                }
+                t = t.delete(c.entry, c.all);
+            }
+        }
+        if (!adds.isEmpty())
+            t = t.add(adds);
+        return t;
+    }
+
+    private static final class Change<T, S extends Geometry> {
+        final Entry<T, S> entry;
+        final boolean add;
+        final boolean all;
+        // only read and written holding the commit lock
+        boolean committed;
+        Throwable error;
+
+        @SuppressWarnings("unchecked")
+        Change(Entry<? extends T, ? extends S> entry, boolean add, boolean all) {
+            this.entry = (Entry<T, S>) entry;
+            this.add = add;
+            this.all = all;
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package com.github.davidmoten.rtree;
 
+import java.util.List;
+
 import com.google.common.base.Preconditions;
 
 /**
@@ -11,6 +13,9 @@ public final class Context {
     private final int minChildren;
     private final Splitter splitter;
     private final Selector selector;
+    private final boolean quantizeChildMbrs;
+    private final boolean leafEntryMbrs;
+    private final Aggregation<?, ?> aggregation;
 
     /**
      * Constructor.
@@ -25,6 +30,33 @@ public final class Context {
      *            algorithm to split the children across two new nodes
      */
     public Context(int minChildren, int maxChildren, Selector selector, Splitter splitter) {
+        this(minChildren, maxChildren, selector, splitter, false, false, null);
+    }
+
+    /**
+     * Constructor with the full set of options, which are set by
+     * {@link RTree.Builder}.
+     * 
+     * @param minChildren
+     *            minimum number of children per node (at least 1)
+     * @param maxChildren
+     *            max number of children per node (minimum is 3)
+     * @param selector
+     *            algorithm to select search path
+     * @param splitter
+     *            algorithm to split the children across two new nodes
+     * @param quantizeChildMbrs
+     *            if true non-leaf nodes also store the mbrs of their children
+     *            as 16 bit offsets relative to their own mbr
+     * @param leafEntryMbrs
+     *            if true leaf nodes also store the mbrs of their entries in
+     *            one float array
+     * @param aggregation
+     *            if non-null every node caches the aggregate of the values of
+     *            the entries below it
+     */
+    Context(int minChildren, int maxChildren, Selector selector, Splitter splitter,
+            boolean quantizeChildMbrs, boolean leafEntryMbrs, Aggregation<?, ?> aggregation) {
         Preconditions.checkNotNull(splitter);
         Preconditions.checkNotNull(selector);
         Preconditions.checkArgument(maxChildren > 2);
@@ -34,6 +66,9 @@ public final class Context {
         this.maxChildren = maxChildren;
         this.minChildren = minChildren;
         this.splitter = splitter;
+        this.quantizeChildMbrs = quantizeChildMbrs;
+        this.leafEntryMbrs = leafEntryMbrs;
+        this.aggregation = aggregation;
     }
 
     public int maxChildren() {
@@ -52,4 +87,54 @@ public final class Context {
         return selector;
     }
 
+    public boolean quantizeChildMbrs() {
+        return quantizeChildMbrs;
+    }
+
+    public boolean leafEntryMbrs() {
+        return leafEntryMbrs;
+    }
+
+    /**
+     * Returns the aggregation cached by each node or null if none.
+     * 
+     * @return the aggregation or null
+     */
+    public Aggregation<?, ?> aggregation() {
+        return aggregation;
+    }
+
+    /**
+     * Returns the aggregate of the entry values or null if there is no
+     * aggregation.
+     */
+    Object aggregateEntries(List<? extends Entry<?, ?>> entries) {
+        if (aggregation == null)
+            return null;
+        final Aggregation<Object, Object> a = uncheckedAggregation();
+        Object result = a.empty();
+        for (int i = 0; i < entries.size(); i++)
+            result = a.combine(result, a.of(entries.get(i).value()));
+        return result;
+    }
+
+    /**
+     * Returns the combined cached aggregates of the nodes or null if there is
+     * no aggregation.
+     */
+    Object aggregateNodes(List<? extends Node<?, ?>> nodes) {
+        if (aggregation == null)
+            return null;
+        final Aggregation<Object, Object> a = uncheckedAggregation();
+        Object result = a.empty();
+        for (int i = 0; i < nodes.size(); i++)
+            result = a.combine(result, nodes.get(i).aggregate());
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    Aggregation<Object, Object> uncheckedAggregation() {
+        return (Aggregation<Object, Object>) aggregation;
+    }
+
 }
@@ -0,0 +1,68 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * A pair of entries, one from each side of a spatial join.
+ * 
+ * @param <T>
+ *            the value type of the left entry
+ * @param <S>
+ *            the geometry type of the left entry
+ * @param <U>
+ *            the value type of the right entry
+ * @param <R>
+ *            the geometry type of the right entry
+ */
+public final class EntryPair<T, S extends Geometry, U, R extends Geometry> {
+    private final Entry<T, S> left;
+    private final Entry<U, R> right;
+
+    EntryPair(Entry<T, S> left, Entry<U, R> right) {
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * Returns the entry from the tree that the join was called on.
+     * 
+     * @return the left entry
+     */
+    public Entry<T, S> left() {
+        return left;
+    }
+
+    /**
+     * Returns the entry from the other tree.
+     * 
+     * @return the right entry
+     */
+    public Entry<U, R> right() {
+        return right;
+    }
+
+    @Override
+    public String toString() {
+        return "EntryPair [left=" + left + ", right=" + right + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(left, right);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        @SuppressWarnings("rawtypes")
+        Optional<EntryPair> other = ObjectsHelper.asClass(obj, EntryPair.class);
+        if (other.isPresent()) {
+            return Objects.equal(left, other.get().left)
+                    && Objects.equal(right, other.get().right);
+        } else
+            return false;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * The nodes of an R-tree laid out breadth-first in arrays. Because all leaves
+ * of an R-tree are at the same depth the leaves are the last nodes in
+ * breadth-first order, the children of each non-leaf are consecutive nodes
+ * and the entries of each leaf are consecutive entries.
+ *
+ * <p>
+ * Node <code>i</code> has mbr <code>nodeMbrs[4i..4i+3]</code> (x1, y1, x2,
+ * y2). If <code>i &lt; firstLeaf</code> its children are the nodes with
+ * indexes from <code>offsets[2i]</code> (inclusive) to
+ * <code>offsets[2i+1]</code> (exclusive), otherwise its entries are the
+ * entries with those indexes. Entry <code>j</code> has mbr
+ * <code>entryMbrs[4j..4j+3]</code>.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class FlatLayout<T, S extends Geometry> {
+
+    final int numNodes;
+    final int firstLeaf;
+    final float[] nodeMbrs;
+    final int[] offsets;
+    final float[] entryMbrs;
+    final Entry<T, S>[] entries;
+
+    private FlatLayout(int numNodes, int firstLeaf, float[] nodeMbrs, int[] offsets,
+            float[] entryMbrs, Entry<T, S>[] entries) {
+        this.numNodes = numNodes;
+        this.firstLeaf = firstLeaf;
+        this.nodeMbrs = nodeMbrs;
+        this.offsets = offsets;
+        this.entryMbrs = entryMbrs;
+        this.entries = entries;
+    }
+
+    /**
+     * Returns the layout of the tree with the given root.
+     *
+     * @param root
+     *            root node if present
+     * @return the flattened tree
+     */
+    static <T, S extends Geometry> FlatLayout<T, S> create(Optional<? extends Node<T, S>> root) {
+        final List<Node<T, S>> nodes = new ArrayList<Node<T, S>>();
+        if (root.isPresent())
+            nodes.add(root.get());
+        int firstLeaf = -1;
+        int size = 0;
+        // the breadth-first list of nodes grows as it is traversed
+        for (int i = 0; i < nodes.size(); i++) {
+            final Node<T, S> node = nodes.get(i);
+            if (node instanceof Leaf) {
+                if (firstLeaf == -1)
+                    firstLeaf = i;
+                size += node.count();
+            } else {
+                if (firstLeaf != -1)
+                    throw new IllegalStateException("leaves are not all at the same depth");
+                nodes.addAll(((NonLeaf<T, S>) node).children());
+            }
+        }
+        final int numNodes = nodes.size();
+        final float[] nodeMbrs = new float[4 * numNodes];
+        final int[] offsets = new int[2 * numNodes];
+        final float[] entryMbrs = new float[4 * size];
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final Entry<T, S>[] entries = new Entry[size];
+        int nextChild = 1;
+        int nextEntry = 0;
+        for (int i = 0; i < numNodes; i++) {
+            final Node<T, S> node = nodes.get(i);
+            setMbr(nodeMbrs, i, node.geometry().mbr());
+            final int start;
+            if (i < firstLeaf) {
+                start = nextChild;
+                nextChild += node.count();
+            } else {
+                start = nextEntry;
+                for (Entry<T, S> entry : ((Leaf<T, S>) node).entries()) {
+                    setMbr(entryMbrs, nextEntry, entry.geometry().mbr());
+                    entries[nextEntry++] = entry;
+                }
+            }
+            offsets[2 * i] = start;
+            offsets[2 * i + 1] = start + node.count();
+        }
+        return new FlatLayout<T, S>(numNodes, firstLeaf, nodeMbrs, offsets, entryMbrs, entries);
+    }
+
+    private static void setMbr(float[] mbrs, int i, Rectangle r) {
+        mbrs[4 * i] = r.x1();
+        mbrs[4 * i + 1] = r.y1();
+        mbrs[4 * i + 2] = r.x2();
+        mbrs[4 * i + 3] = r.y2();
+    }
+
+}
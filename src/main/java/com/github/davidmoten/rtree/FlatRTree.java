@@ -0,0 +1,56 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+/**
+ * A read-only copy of an {@link RTree} whose nodes live in a few primitive
+ * arrays rather than as a graph of node, list and rectangle objects. Nodes are
+ * in breadth-first order (see {@link FlatLayout}): the mbrs of all nodes are
+ * in one float array, the children of a node are found by the int offsets
+ * held in another and the mbrs of all entries are in a third. A search reads
+ * these arrays sequentially and only dereferences an entry when its mbr
+ * matches. Obtain one using {@link RTree#freeze()}.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class FlatRTree<T, S extends Geometry> extends AbstractFlatRTree<T, S> {
+
+    private final float[] nodeMbrs;
+    private final int[] offsets;
+    private final float[] entryMbrs;
+
+    private FlatRTree(FlatLayout<T, S> layout) {
+        super(layout);
+        this.nodeMbrs = layout.nodeMbrs;
+        this.offsets = layout.offsets;
+        this.entryMbrs = layout.entryMbrs;
+    }
+
+    static <T, S extends Geometry> FlatRTree<T, S> create(RTree<T, S> tree) {
+        return new FlatRTree<T, S>(FlatLayout.create(tree.root()));
+    }
+
+    @Override
+    float nodeMbr(int node, int k) {
+        return nodeMbrs[4 * node + k];
+    }
+
+    @Override
+    int childrenStart(int node) {
+        return offsets[2 * node];
+    }
+
+    @Override
+    int childrenEnd(int node) {
+        return offsets[2 * node + 1];
+    }
+
+    @Override
+    float entryMbr(int entry, int k) {
+        return entryMbrs[4 * entry + k];
+    }
+
+}
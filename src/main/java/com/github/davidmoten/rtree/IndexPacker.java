@@ -0,0 +1,110 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Sort-Tile-Recursive packing (see {@link PackerStr}) of items identified by
+ * their index into primitive arrays of centre coordinates. No objects are
+ * created per item.
+ */
+final class IndexPacker {
+
+    private IndexPacker() {
+        // prevent instantiation
+    }
+
+    /**
+     * Returns the indexes of the items grouped using STR into groups of at
+     * most <code>maxSize</code>.
+     *
+     * @param cx
+     *            x coordinate of the centre of each item
+     * @param cy
+     *            y coordinate of the centre of each item
+     * @param maxSize
+     *            max number of items in a group
+     * @return groups of item indexes
+     */
+    static int[][] pack(float[] cx, float[] cy, int maxSize) {
+        Preconditions.checkArgument(maxSize > 0);
+        Preconditions.checkArgument(cx.length == cy.length);
+        final int n = cx.length;
+        final long[] keys = new long[n];
+        for (int i = 0; i < n; i++)
+            keys[i] = key(cx[i], i);
+        Arrays.sort(keys);
+        final int numGroups = ceilDiv(n, maxSize);
+        final int numSlices = (int) Math.ceil(Math.sqrt(numGroups));
+        // slices are grouped separately so there may be more than numGroups
+        final List<int[]> groups = new ArrayList<int[]>(numGroups + numSlices);
+        for (int[] slice : ranges(0, n, numSlices * maxSize)) {
+            for (int i = slice[0]; i < slice[1]; i++) {
+                int index = (int) keys[i];
+                keys[i] = key(cy[index], index);
+            }
+            Arrays.sort(keys, slice[0], slice[1]);
+            for (int[] range : ranges(slice[0], slice[1], maxSize)) {
+                final int[] group = new int[range[1] - range[0]];
+                for (int i = 0; i < group.length; i++)
+                    group[i] = (int) keys[range[0] + i];
+                groups.add(group);
+            }
+        }
+        return groups.toArray(new int[groups.size()][]);
+    }
+
+    /**
+     * Returns the indexes of the ordinates in increasing order of ordinate.
+     *
+     * @param ordinates
+     *            values to sort
+     * @return indexes into <code>ordinates</code>
+     */
+    static int[] order(float[] ordinates) {
+        final long[] keys = new long[ordinates.length];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = key(ordinates[i], i);
+        Arrays.sort(keys);
+        final int[] indexes = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+            indexes[i] = (int) keys[i];
+        return indexes;
+    }
+
+    /**
+     * Returns a key that sorts by the ordinate and then by the index.
+     */
+    private static long key(float ordinate, int index) {
+        int bits = Float.floatToIntBits(ordinate);
+        // flip the magnitude bits of negative numbers so that the int order
+        // matches the float order
+        bits ^= (bits >> 31) & 0x7fffffff;
+        return ((long) bits << 32) | index;
+    }
+
+    /**
+     * Returns the range [start, end) split into the minimum number of
+     * consecutive ranges of at most maxSize with sizes differing by at most
+     * one (as {@link Util#partition(java.util.List, int)} does).
+     */
+    private static int[][] ranges(int start, int end, int maxSize) {
+        final int n = end - start;
+        final int numRanges = ceilDiv(n, maxSize);
+        final int[][] ranges = new int[numRanges][];
+        for (int i = 0; i < numRanges; i++) {
+            int finish = start + n / numRanges + (i < n % numRanges ? 1 : 0);
+            ranges[i] = new int[] { start, finish };
+            start = finish;
+        }
+        return ranges;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+}
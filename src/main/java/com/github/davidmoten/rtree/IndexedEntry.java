@@ -0,0 +1,64 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * An {@link Entry} found by a batch search together with the index of the
+ * query (in the list of queries) that it matched.
+ * 
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class IndexedEntry<T, S extends Geometry> {
+    private final int index;
+    private final Entry<T, S> entry;
+
+    IndexedEntry(int index, Entry<T, S> entry) {
+        this.index = index;
+        this.entry = entry;
+    }
+
+    /**
+     * Returns the index of the query that the entry matched.
+     * 
+     * @return the query index
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Returns the entry.
+     * 
+     * @return the entry
+     */
+    public Entry<T, S> entry() {
+        return entry;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedEntry [index=" + index + ", entry=" + entry + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(index, entry);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        @SuppressWarnings("rawtypes")
+        Optional<IndexedEntry> other = ObjectsHelper.asClass(obj, IndexedEntry.class);
+        if (other.isPresent()) {
+            return index == other.get().index && Objects.equal(entry, other.get().entry);
+        } else
+            return false;
+    }
+
+}
@@ -0,0 +1,237 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import rx.functions.Func2;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * Joins two trees by synchronized traversal (Brinkhoff, Kriegel and Seeger,
+ * "Efficient Processing of Spatial Joins Using R-trees", 1993). Pairs of nodes
+ * whose mbrs intersect are kept on a stack and expanded depth-first into the
+ * pairs of their children whose mbrs intersect, considering only the children
+ * that intersect the intersection of the two parent mbrs. If the trees have
+ * different heights the leaf of the shorter tree is paired with the children
+ * of the other node. Each pair of leaves is joined by nested loops or by a
+ * plane sweep along x and its results buffered, so at most
+ * <code>maxChildren<sup>2</sup></code> pairs are held at once. Not thread
+ * safe.
+ *
+ * @param <T>
+ *            the value type of the left tree
+ * @param <S>
+ *            the geometry type of the left tree
+ * @param <U>
+ *            the value type of the right tree
+ * @param <R>
+ *            the geometry type of the right tree
+ */
+final class JoinIterator<T, S extends Geometry, U, R extends Geometry> implements
+        Iterator<EntryPair<T, S, U, R>> {
+
+    private final Func2<? super S, ? super R, Boolean> predicate;
+    private final boolean planeSweep;
+    // the node pairs still to be expanded
+    private final List<Node<T, S>> lefts = new ArrayList<Node<T, S>>();
+    private final List<Node<U, R>> rights = new ArrayList<Node<U, R>>();
+    // the pairs found by the last leaf join not yet returned
+    private final List<EntryPair<T, S, U, R>> buffer = new ArrayList<EntryPair<T, S, U, R>>();
+    private int bufferIndex;
+    // scratch arrays for the plane sweep
+    private int[] leftOrder = new int[0];
+    private int[] rightOrder = new int[0];
+    private final LeafMbrs leafMbrs = new LeafMbrs();
+    private EntryPair<T, S, U, R> next;
+
+    JoinIterator(Optional<? extends Node<T, S>> left, Optional<? extends Node<U, R>> right,
+            Func2<? super S, ? super R, Boolean> predicate, boolean planeSweep) {
+        this.predicate = predicate;
+        this.planeSweep = planeSweep;
+        if (left.isPresent() && right.isPresent()
+                && left.get().geometry().mbr().intersects(right.get().geometry().mbr())) {
+            lefts.add(left.get());
+            rights.add(right.get());
+        }
+        next = computeNext();
+    }
+
+    private EntryPair<T, S, U, R> computeNext() {
+        while (bufferIndex == buffer.size()) {
+            buffer.clear();
+            bufferIndex = 0;
+            if (lefts.isEmpty())
+                return null;
+            final Node<T, S> a = lefts.remove(lefts.size() - 1);
+            final Node<U, R> b = rights.remove(rights.size() - 1);
+            expand(a, b);
+        }
+        return buffer.get(bufferIndex++);
+    }
+
+    private void expand(Node<T, S> a, Node<U, R> b) {
+        final Rectangle ra = a.geometry().mbr();
+        final Rectangle rb = b.geometry().mbr();
+        // only children intersecting both parents can be in a result
+        final float x1 = Math.max(ra.x1(), rb.x1());
+        final float y1 = Math.max(ra.y1(), rb.y1());
+        final float x2 = Math.min(ra.x2(), rb.x2());
+        final float y2 = Math.min(ra.y2(), rb.y2());
+        if (a instanceof Leaf && b instanceof Leaf) {
+            if (planeSweep)
+                sweepLeaves((Leaf<T, S>) a, (Leaf<U, R>) b, x1, y1, x2, y2);
+            else
+                joinLeaves((Leaf<T, S>) a, (Leaf<U, R>) b, x1, y1, x2, y2);
+        } else if (b instanceof Leaf) {
+            for (Node<T, S> child : ((NonLeaf<T, S>) a).children())
+                if (intersects(child.geometry().mbr(), x1, y1, x2, y2))
+                    push(child, b);
+        } else if (a instanceof Leaf) {
+            for (Node<U, R> child : ((NonLeaf<U, R>) b).children())
+                if (intersects(child.geometry().mbr(), x1, y1, x2, y2))
+                    push(a, child);
+        } else {
+            final List<? extends Node<U, R>> bChildren = ((NonLeaf<U, R>) b).children();
+            final List<Node<U, R>> candidates = new ArrayList<Node<U, R>>(bChildren.size());
+            for (Node<U, R> child : bChildren)
+                if (intersects(child.geometry().mbr(), x1, y1, x2, y2))
+                    candidates.add(child);
+            for (Node<T, S> childA : ((NonLeaf<T, S>) a).children()) {
+                final Rectangle r = childA.geometry().mbr();
+                if (intersects(r, x1, y1, x2, y2))
+                    for (int j = 0; j < candidates.size(); j++)
+                        if (r.intersects(candidates.get(j).geometry().mbr()))
+                            push(childA, candidates.get(j));
+            }
+        }
+    }
+
+    private void push(Node<T, S> a, Node<U, R> b) {
+        lefts.add(a);
+        rights.add(b);
+    }
+
+    private void joinLeaves(Leaf<T, S> a, Leaf<U, R> b, float x1, float y1, float x2, float y2) {
+        final float[] ma = leafMbrs.of(a);
+        final float[] mb = leafMbrs.of(b);
+        final int na = a.count();
+        final int nb = b.count();
+        for (int i = 0; i < na; i++) {
+            final int p = 4 * i;
+            if (intersects(ma, p, x1, y1, x2, y2))
+                for (int j = 0; j < nb; j++) {
+                    final int q = 4 * j;
+                    if (intersects(mb, q, ma[p], ma[p + 1], ma[p + 2], ma[p + 3]))
+                        test(a, i, b, j);
+                }
+        }
+    }
+
+    private void sweepLeaves(Leaf<T, S> a, Leaf<U, R> b, float x1, float y1, float x2, float y2) {
+        final float[] ma = leafMbrs.of(a);
+        final float[] mb = leafMbrs.of(b);
+        if (leftOrder.length < a.count())
+            leftOrder = new int[a.count()];
+        if (rightOrder.length < b.count())
+            rightOrder = new int[b.count()];
+        final int[] oa = leftOrder;
+        final int[] ob = rightOrder;
+        final int na = sortedByX1(ma, a.count(), oa, x1, y1, x2, y2);
+        final int nb = sortedByX1(mb, b.count(), ob, x1, y1, x2, y2);
+        int i = 0;
+        int j = 0;
+        while (i < na && j < nb) {
+            final int p = 4 * oa[i];
+            final int q = 4 * ob[j];
+            if (ma[p] <= mb[q]) {
+                // the a entry starts first so pair it with each b entry
+                // starting before it ends
+                for (int k = j; k < nb; k++) {
+                    final int s = 4 * ob[k];
+                    if (mb[s] > ma[p + 2])
+                        break;
+                    else if (overlapsY(ma, p, mb, s))
+                        test(a, oa[i], b, ob[k]);
+                }
+                i++;
+            } else {
+                for (int k = i; k < na; k++) {
+                    final int s = 4 * oa[k];
+                    if (ma[s] > mb[q + 2])
+                        break;
+                    else if (overlapsY(ma, s, mb, q))
+                        test(a, oa[k], b, ob[j]);
+                }
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Writes the indexes of the entries whose mbr intersects the given bounds
+     * to order sorted by x1 and returns how many there are.
+     */
+    private static int sortedByX1(float[] mbrs, int count, int[] order, float x1, float y1,
+            float x2, float y2) {
+        int n = 0;
+        for (int i = 0; i < count; i++)
+            if (intersects(mbrs, 4 * i, x1, y1, x2, y2)) {
+                // insertion sort, leaves are small
+                final float x = mbrs[4 * i];
+                int k = n;
+                while (k > 0 && mbrs[4 * order[k - 1]] > x) {
+                    order[k] = order[k - 1];
+                    k--;
+                }
+                order[k] = i;
+                n++;
+            }
+        return n;
+    }
+
+    private void test(Leaf<T, S> a, int i, Leaf<U, R> b, int j) {
+        final Entry<T, S> ea = a.entries().get(i);
+        final Entry<U, R> eb = b.entries().get(j);
+        if (predicate.call(ea.geometry(), eb.geometry()))
+            buffer.add(new EntryPair<T, S, U, R>(ea, eb));
+    }
+
+    private static boolean overlapsY(float[] ma, int p, float[] mb, int q) {
+        return Math.max(ma[p + 1], mb[q + 1]) <= Math.min(ma[p + 3], mb[q + 3]);
+    }
+
+    private static boolean intersects(float[] mbrs, int p, float x1, float y1, float x2, float y2) {
+        return Math.max(mbrs[p], x1) <= Math.min(mbrs[p + 2], x2)
+                && Math.max(mbrs[p + 1], y1) <= Math.min(mbrs[p + 3], y2);
+    }
+
+    private static boolean intersects(Rectangle r, float x1, float y1, float x2, float y2) {
+        return Math.max(r.x1(), x1) <= Math.min(r.x2(), x2)
+                && Math.max(r.y1(), y1) <= Math.min(r.y2(), y2);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public EntryPair<T, S, U, R> next() {
+        if (next == null)
+            throw new NoSuchElementException();
+        final EntryPair<T, S, U, R> result = next;
+        next = computeNext();
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
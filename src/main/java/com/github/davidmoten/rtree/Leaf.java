@@ -10,6 +10,7 @@ import rx.Subscriber;
 import rx.functions.Func1;
 
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.HasGeometry;
 import com.github.davidmoten.rtree.geometry.ListPair;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 import com.google.common.base.Optional;
@@ -17,13 +18,46 @@ import com.google.common.base.Optional;
 final class Leaf<T, S extends Geometry> implements Node<T, S> {
 
     private final List<Entry<T, S>> entries;
+    /**
+     * The x1, y1, x2, y2 coordinates of the mbr of each entry in entry order
+     * so that a search can test entries without dereferencing them. Null
+     * unless context.leafEntryMbrs() is true.
+     */
+    private final float[] mbrs;
     private final Rectangle mbr;
+    // the aggregate of the entry values if the context has an aggregation
+    private final Object aggregate;
     private final Context context;
 
     Leaf(List<Entry<T, S>> entries, Context context) {
         this.entries = entries;
         this.context = context;
         this.mbr = Util.mbr(entries);
+        this.mbrs = context.leafEntryMbrs() ? mbrs(entries) : null;
+        this.aggregate = context.aggregateEntries(entries);
+    }
+
+    private static float[] mbrs(List<? extends HasGeometry> items) {
+        final float[] mbrs = new float[4 * items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            final Rectangle r = items.get(i).geometry().mbr();
+            final int j = 4 * i;
+            mbrs[j] = r.x1();
+            mbrs[j + 1] = r.y1();
+            mbrs[j + 2] = r.x2();
+            mbrs[j + 3] = r.y2();
+        }
+        return mbrs;
+    }
+
+    static <T, S extends Geometry> Func1<List<Entry<T, S>>, Node<T, S>> factory(
+            final Context context) {
+        return new Func1<List<Entry<T, S>>, Node<T, S>>() {
+            @Override
+            public Node<T, S> call(List<Entry<T, S>> entries) {
+                return new Leaf<T, S>(entries, context);
+            }
+        };
     }
 
     @Override
@@ -35,6 +69,51 @@ final class Leaf<T, S extends Geometry> implements Node<T, S> {
         return entries;
     }
 
+    /**
+     * Returns the x1, y1, x2, y2 coordinates of the mbr of each entry in entry
+     * order. The array must not be modified. If the leaf does not store the array (see
+     * {@link Context#leafEntryMbrs()}) a new one is built on each call.
+     * 
+     * @return the entry mbr coordinates
+     */
+    float[] mbrs() {
+        if (mbrs == null)
+            return mbrs(entries);
+        else
+            return mbrs;
+    }
+
+    /**
+     * Returns true if and only if this leaf stores the mbrs of its entries so
+     * that {@link #mbrs()} does not build a new array.
+     * 
+     * @return true if the entry mbrs are stored
+     */
+    boolean storesMbrs() {
+        return mbrs != null;
+    }
+
+    /**
+     * Returns true if and only if the entry at index <code>i</code> satisfies
+     * the condition. If the condition is a {@link BoundsCondition} then the
+     * entry is only dereferenced if its mbr passes the bounds test.
+     * 
+     * @param i
+     *            index of entry
+     * @param condition
+     *            condition to test
+     * @return true if the entry satisfies the condition
+     */
+    boolean matches(int i, Func1<? super Geometry, Boolean> condition) {
+        if (mbrs != null && condition instanceof BoundsCondition) {
+            final int j = 4 * i;
+            if (!((BoundsCondition) condition).test(mbrs[j], mbrs[j + 1], mbrs[j + 2],
+                    mbrs[j + 3]))
+                return false;
+        }
+        return condition.call(entries.get(i).geometry());
+    }
+
     @Override
     public void search(Func1<? super Geometry, Boolean> condition,
             Subscriber<? super Entry<T, S>> subscriber) {
@@ -42,6 +121,11 @@ final class Leaf<T, S extends Geometry> implements Node<T, S> {
         if (!condition.call(this.geometry().mbr()))
             return;
 
+        if (mbrs != null && condition instanceof BoundsCondition) {
+            searchBounds((BoundsCondition) condition, condition, subscriber);
+            return;
+        }
+
         for (final Entry<T, S> entry : entries) {
             if (subscriber.isUnsubscribed())
                 return;
@@ -52,11 +136,88 @@ final class Leaf<T, S extends Geometry> implements Node<T, S> {
         }
     }
 
+    @Override
+    public int search(Rectangle r, RTree.Visitor<T, S> visitor) {
+        int count = 0;
+        for (int i = 0; i < entries.size(); i++)
+            if (intersects(i, r)) {
+                visitor.visit(entries.get(i));
+                count++;
+            }
+        return count;
+    }
+
+    @Override
+    public int count(Rectangle r) {
+        int count = 0;
+        for (int i = 0; i < entries.size(); i++)
+            if (intersects(i, r))
+                count++;
+        return count;
+    }
+
+    /**
+     * Returns true if and only if the geometry of the entry at index
+     * <code>i</code> intersects the rectangle. The entry is only dereferenced
+     * if its mbr intersects the rectangle.
+     * 
+     * @param i
+     *            index of entry
+     * @param r
+     *            rectangle
+     * @return true if the entry intersects r
+     */
+    boolean intersects(int i, Rectangle r) {
+        if (mbrs == null)
+            return entries.get(i).geometry().intersects(r);
+        final int j = 4 * i;
+        // same arithmetic as Rectangle.intersects
+        return Math.min(mbrs[j + 2], r.x2()) >= Math.max(mbrs[j], r.x1())
+                && Math.min(mbrs[j + 3], r.y2()) >= Math.max(mbrs[j + 1], r.y1())
+                && entries.get(i).geometry().intersects(r);
+    }
+
+    private void searchBounds(BoundsCondition bounds, Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        final float[] mbrs = this.mbrs;
+        final int n = entries.size();
+        for (int i = 0, j = 0; i < n; i++, j += 4) {
+            if (subscriber.isUnsubscribed())
+                return;
+            else if (bounds.test(mbrs[j], mbrs[j + 1], mbrs[j + 2], mbrs[j + 3])) {
+                // only now touch the entry to apply the exact condition
+                final Entry<T, S> entry = entries.get(i);
+                if (condition.call(entry.geometry()))
+                    subscriber.onNext(entry);
+            }
+        }
+    }
+
     @Override
     public int count() {
         return entries.size();
     }
 
+    @Override
+    public int entryCount() {
+        return entries.size();
+    }
+
+    @Override
+    public Object aggregate() {
+        return aggregate;
+    }
+
+    @Override
+    public Object aggregate(Rectangle r) {
+        final Aggregation<Object, Object> a = context.uncheckedAggregation();
+        Object result = a.empty();
+        for (int i = 0; i < entries.size(); i++)
+            if (intersects(i, r))
+                result = a.combine(result, a.of(entries.get(i).value()));
+        return result;
+    }
+
     @Override
     public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
         @SuppressWarnings("unchecked")
@@ -69,6 +230,18 @@ final class Leaf<T, S extends Geometry> implements Node<T, S> {
         }
     }
 
+    @Override
+    public List<Node<T, S>> addAll(List<Entry<T, S>> entries) {
+        final List<Entry<T, S>> entries2 = new ArrayList<Entry<T, S>>(this.entries.size()
+                + entries.size());
+        entries2.addAll(this.entries);
+        entries2.addAll(entries);
+        final List<Node<T, S>> list = new ArrayList<Node<T, S>>();
+        for (List<Entry<T, S>> group : Util.split(entries2, context))
+            list.add(new Leaf<T, S>(group, context));
+        return list;
+    }
+
     private List<Node<T, S>> makeLeaves(ListPair<Entry<T, S>> pair) {
         List<Node<T, S>> list = new ArrayList<Node<T, S>>();
         list.add(new Leaf<T, S>(pair.group1().list(), context));
@@ -0,0 +1,28 @@
+package com.github.davidmoten.rtree;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Gives the entry mbr arrays of leaves (see {@link Leaf#mbrs()}) for the
+ * duration of one join. A leaf that stores its array (see
+ * {@link Context#leafEntryMbrs()}) gives its own, otherwise the array is built
+ * the first time the leaf is asked for and reused for the rest of the join. Not
+ * thread safe.
+ */
+final class LeafMbrs {
+
+    private final Map<Leaf<?, ?>, float[]> built = new IdentityHashMap<Leaf<?, ?>, float[]>();
+
+    float[] of(Leaf<?, ?> leaf) {
+        if (leaf.storesMbrs())
+            return leaf.mbrs();
+        float[] mbrs = built.get(leaf);
+        if (mbrs == null) {
+            mbrs = leaf.mbrs();
+            built.put(leaf, mbrs);
+        }
+        return mbrs;
+    }
+
+}
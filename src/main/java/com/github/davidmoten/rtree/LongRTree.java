@@ -0,0 +1,547 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable R-tree whose entries are a primitive <code>long</code> id and a
+ * rectangle. Leaves store the ids in a <code>long[]</code> and the rectangles
+ * in a <code>float[]</code> so there is no object per entry, and searches
+ * report matches to a {@link Visitor} without allocating.
+ *
+ * <p>
+ * Trees are bulk loaded with STR packing using {@link #create(long[], float[],
+ * int)} and modified by path copying using {@link #add} and {@link #delete}.
+ * Nodes split in half along the axis on which their children's centres are
+ * most spread. A delete removes a node that becomes empty but does not
+ * redistribute the entries of a node that becomes underfull.
+ */
+public final class LongRTree {
+
+    /**
+     * Receives the id and rectangle of each matching entry of a search.
+     */
+    public interface Visitor {
+
+        /**
+         * Called for each matching entry.
+         *
+         * @param id
+         *            the entry id
+         * @param x1
+         *            minimum x of entry rectangle
+         * @param y1
+         *            minimum y of entry rectangle
+         * @param x2
+         *            maximum x of entry rectangle
+         * @param y2
+         *            maximum y of entry rectangle
+         */
+        void visit(long id, float x1, float y1, float x2, float y2);
+    }
+
+    // null if empty
+    private final LongNode root;
+    private final int size;
+    private final int maxChildren;
+
+    private LongRTree(LongNode root, int size, int maxChildren) {
+        this.root = root;
+        this.size = size;
+        this.maxChildren = maxChildren;
+    }
+
+    /**
+     * Returns an empty tree.
+     *
+     * @param maxChildren
+     *            max number of children of a node
+     * @return an empty tree
+     */
+    public static LongRTree create(int maxChildren) {
+        Preconditions.checkArgument(maxChildren >= 2, "maxChildren must be at least 2");
+        return new LongRTree(null, 0, maxChildren);
+    }
+
+    /**
+     * Returns a tree containing the given entries.
+     *
+     * @param ids
+     *            entry ids
+     * @param mbrs
+     *            the x1, y1, x2, y2 of the rectangle of each entry in the same
+     *            order as <code>ids</code>
+     * @param maxChildren
+     *            max number of children of a node
+     * @return a tree
+     */
+    public static LongRTree create(long[] ids, float[] mbrs, int maxChildren) {
+        Preconditions.checkArgument(maxChildren >= 2, "maxChildren must be at least 2");
+        Preconditions.checkArgument(mbrs.length == 4 * ids.length,
+                "mbrs must have four ordinates per id");
+        final int n = ids.length;
+        if (n == 0)
+            return new LongRTree(null, 0, maxChildren);
+        final float[] cx = new float[n];
+        final float[] cy = new float[n];
+        for (int i = 0; i < n; i++) {
+            checkRectangle(mbrs[4 * i], mbrs[4 * i + 1], mbrs[4 * i + 2], mbrs[4 * i + 3]);
+            cx[i] = (mbrs[4 * i] + mbrs[4 * i + 2]) / 2;
+            cy[i] = (mbrs[4 * i + 1] + mbrs[4 * i + 3]) / 2;
+        }
+        final int[][] groups = IndexPacker.pack(cx, cy, maxChildren);
+        LongNode[] nodes = new LongNode[groups.length];
+        for (int g = 0; g < groups.length; g++) {
+            final int[] group = groups[g];
+            final long[] groupIds = new long[group.length];
+            final float[] groupMbrs = new float[4 * group.length];
+            for (int i = 0; i < group.length; i++) {
+                groupIds[i] = ids[group[i]];
+                System.arraycopy(mbrs, 4 * group[i], groupMbrs, 4 * i, 4);
+            }
+            nodes[g] = new LongLeaf(groupIds, groupMbrs);
+        }
+        while (nodes.length > 1) {
+            final float[] ncx = new float[nodes.length];
+            final float[] ncy = new float[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                ncx[i] = (nodes[i].x1 + nodes[i].x2) / 2;
+                ncy[i] = (nodes[i].y1 + nodes[i].y2) / 2;
+            }
+            final int[][] parentGroups = IndexPacker.pack(ncx, ncy, maxChildren);
+            final LongNode[] parents = new LongNode[parentGroups.length];
+            for (int g = 0; g < parentGroups.length; g++) {
+                final LongNode[] children = new LongNode[parentGroups[g].length];
+                for (int i = 0; i < children.length; i++)
+                    children[i] = nodes[parentGroups[g][i]];
+                parents[g] = new LongNonLeaf(children);
+            }
+            nodes = parents;
+        }
+        return new LongRTree(nodes[0], n, maxChildren);
+    }
+
+    /**
+     * Returns the number of entries in the tree.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if and only if the tree has no entries.
+     *
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a tree with the given entry added. This tree is unchanged.
+     *
+     * @param id
+     *            entry id
+     * @param x1
+     *            minimum x of entry rectangle
+     * @param y1
+     *            minimum y of entry rectangle
+     * @param x2
+     *            maximum x of entry rectangle
+     * @param y2
+     *            maximum y of entry rectangle
+     * @return a tree with the entry added
+     */
+    public LongRTree add(long id, float x1, float y1, float x2, float y2) {
+        checkRectangle(x1, y1, x2, y2);
+        if (root == null)
+            return new LongRTree(new LongLeaf(new long[] { id }, new float[] { x1, y1, x2, y2 }),
+                    1, maxChildren);
+        final LongNode[] nodes = root.add(id, x1, y1, x2, y2, maxChildren);
+        final LongNode node = nodes.length == 1 ? nodes[0] : new LongNonLeaf(nodes);
+        return new LongRTree(node, size + 1, maxChildren);
+    }
+
+    /**
+     * Returns a tree with the given entry added. This tree is unchanged.
+     *
+     * @param id
+     *            entry id
+     * @param r
+     *            entry rectangle
+     * @return a tree with the entry added
+     */
+    public LongRTree add(long id, Rectangle r) {
+        return add(id, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    /**
+     * Returns a tree without one entry that has the given id and rectangle or
+     * this tree if there is no such entry.
+     *
+     * @param id
+     *            entry id
+     * @param x1
+     *            minimum x of entry rectangle
+     * @param y1
+     *            minimum y of entry rectangle
+     * @param x2
+     *            maximum x of entry rectangle
+     * @param y2
+     *            maximum y of entry rectangle
+     * @return a tree with the entry deleted
+     */
+    public LongRTree delete(long id, float x1, float y1, float x2, float y2) {
+        if (root == null)
+            return this;
+        LongNode node = root.delete(id, x1, y1, x2, y2);
+        if (node == root)
+            return this;
+        // a root with one child is replaced by the child
+        while (node instanceof LongNonLeaf && ((LongNonLeaf) node).children.length == 1)
+            node = ((LongNonLeaf) node).children[0];
+        return new LongRTree(node, size - 1, maxChildren);
+    }
+
+    /**
+     * Returns a tree without one entry that has the given id and rectangle or
+     * this tree if there is no such entry.
+     *
+     * @param id
+     *            entry id
+     * @param r
+     *            entry rectangle
+     * @return a tree with the entry deleted
+     */
+    public LongRTree delete(long id, Rectangle r) {
+        return delete(id, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    /**
+     * Calls the visitor for each entry whose rectangle intersects the given
+     * rectangle.
+     *
+     * @param x1
+     *            minimum x of search rectangle
+     * @param y1
+     *            minimum y of search rectangle
+     * @param x2
+     *            maximum x of search rectangle
+     * @param y2
+     *            maximum y of search rectangle
+     * @param visitor
+     *            receives the matching entries
+     * @return the number of matching entries
+     */
+    public int search(float x1, float y1, float x2, float y2, Visitor visitor) {
+        if (root == null)
+            return 0;
+        else
+            return root.search(x1, y1, x2, y2, visitor);
+    }
+
+    /**
+     * Calls the visitor for each entry whose rectangle intersects the given
+     * rectangle.
+     *
+     * @param r
+     *            search rectangle
+     * @param visitor
+     *            receives the matching entries
+     * @return the number of matching entries
+     */
+    public int search(Rectangle r, Visitor visitor) {
+        return search(r.x1(), r.y1(), r.x2(), r.y2(), visitor);
+    }
+
+    /**
+     * Calls the visitor for every entry in the tree.
+     *
+     * @param visitor
+     *            receives the entries
+     * @return the number of entries
+     */
+    public int entries(Visitor visitor) {
+        return search(-Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE,
+                visitor);
+    }
+
+    private static void checkRectangle(float x1, float y1, float x2, float y2) {
+        Preconditions.checkArgument(x2 >= x1 && y2 >= y1, "not a rectangle");
+    }
+
+    private static boolean intersects(float ax1, float ay1, float ax2, float ay2, float bx1,
+            float by1, float bx2, float by2) {
+        return Math.min(ax2, bx2) >= Math.max(ax1, bx1) && Math.min(ay2, by2) >= Math.max(ay1, by1);
+    }
+
+    private abstract static class LongNode {
+        final float x1, y1, x2, y2;
+
+        LongNode(float x1, float y1, float x2, float y2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+
+        /**
+         * Returns the one or two nodes that replace this node.
+         */
+        abstract LongNode[] add(long id, float x1, float y1, float x2, float y2, int maxChildren);
+
+        /**
+         * Returns this node if the entry was not found, null if the node is
+         * now empty, otherwise the replacement node.
+         */
+        abstract LongNode delete(long id, float x1, float y1, float x2, float y2);
+
+        abstract int search(float x1, float y1, float x2, float y2, Visitor visitor);
+
+        final boolean contains(float x1, float y1, float x2, float y2) {
+            return x1 >= this.x1 && y1 >= this.y1 && x2 <= this.x2 && y2 <= this.y2;
+        }
+
+        final float areaIncrease(float x1, float y1, float x2, float y2) {
+            return (Math.max(x2, this.x2) - Math.min(x1, this.x1))
+                    * (Math.max(y2, this.y2) - Math.min(y1, this.y1)) - area();
+        }
+
+        final float area() {
+            return (x2 - x1) * (y2 - y1);
+        }
+    }
+
+    private static final class LongLeaf extends LongNode {
+        final long[] ids;
+        // x1, y1, x2, y2 of each entry
+        final float[] mbrs;
+
+        LongLeaf(long[] ids, float[] mbrs) {
+            super(min(mbrs, 0), min(mbrs, 1), max(mbrs, 2), max(mbrs, 3));
+            this.ids = ids;
+            this.mbrs = mbrs;
+        }
+
+        @Override
+        LongNode[] add(long id, float x1, float y1, float x2, float y2, int maxChildren) {
+            final int n = ids.length;
+            final long[] ids2 = new long[n + 1];
+            System.arraycopy(ids, 0, ids2, 0, n);
+            ids2[n] = id;
+            final float[] mbrs2 = new float[4 * (n + 1)];
+            System.arraycopy(mbrs, 0, mbrs2, 0, 4 * n);
+            mbrs2[4 * n] = x1;
+            mbrs2[4 * n + 1] = y1;
+            mbrs2[4 * n + 2] = x2;
+            mbrs2[4 * n + 3] = y2;
+            if (n + 1 <= maxChildren)
+                return new LongNode[] { new LongLeaf(ids2, mbrs2) };
+            final int[] order = splitOrder(mbrs2);
+            final int half = order.length / 2;
+            return new LongNode[] { leaf(ids2, mbrs2, order, 0, half),
+                    leaf(ids2, mbrs2, order, half, order.length) };
+        }
+
+        private static LongLeaf leaf(long[] ids, float[] mbrs, int[] order, int from, int to) {
+            final long[] ids2 = new long[to - from];
+            final float[] mbrs2 = new float[4 * (to - from)];
+            for (int i = from; i < to; i++) {
+                ids2[i - from] = ids[order[i]];
+                System.arraycopy(mbrs, 4 * order[i], mbrs2, 4 * (i - from), 4);
+            }
+            return new LongLeaf(ids2, mbrs2);
+        }
+
+        @Override
+        LongNode delete(long id, float x1, float y1, float x2, float y2) {
+            final int n = ids.length;
+            for (int i = 0; i < n; i++) {
+                final int j = 4 * i;
+                if (ids[i] == id && mbrs[j] == x1 && mbrs[j + 1] == y1 && mbrs[j + 2] == x2
+                        && mbrs[j + 3] == y2) {
+                    if (n == 1)
+                        return null;
+                    final long[] ids2 = new long[n - 1];
+                    System.arraycopy(ids, 0, ids2, 0, i);
+                    System.arraycopy(ids, i + 1, ids2, i, n - 1 - i);
+                    final float[] mbrs2 = new float[4 * (n - 1)];
+                    System.arraycopy(mbrs, 0, mbrs2, 0, j);
+                    System.arraycopy(mbrs, j + 4, mbrs2, j, 4 * (n - 1 - i));
+                    return new LongLeaf(ids2, mbrs2);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int search(float x1, float y1, float x2, float y2, Visitor visitor) {
+            if (!intersects(x1, y1, x2, y2, this.x1, this.y1, this.x2, this.y2))
+                return 0;
+            int count = 0;
+            final float[] m = mbrs;
+            for (int i = 0, j = 0; i < ids.length; i++, j += 4) {
+                if (intersects(x1, y1, x2, y2, m[j], m[j + 1], m[j + 2], m[j + 3])) {
+                    visitor.visit(ids[i], m[j], m[j + 1], m[j + 2], m[j + 3]);
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static float min(float[] mbrs, int offset) {
+            float x = mbrs[offset];
+            for (int j = offset + 4; j < mbrs.length; j += 4)
+                x = Math.min(x, mbrs[j]);
+            return x;
+        }
+
+        private static float max(float[] mbrs, int offset) {
+            float x = mbrs[offset];
+            for (int j = offset + 4; j < mbrs.length; j += 4)
+                x = Math.max(x, mbrs[j]);
+            return x;
+        }
+    }
+
+    private static final class LongNonLeaf extends LongNode {
+        final LongNode[] children;
+
+        LongNonLeaf(LongNode[] children) {
+            super(x1(children), y1(children), x2(children), y2(children));
+            this.children = children;
+        }
+
+        @Override
+        LongNode[] add(long id, float x1, float y1, float x2, float y2, int maxChildren) {
+            // choose the child needing least area increase then least area
+            int best = 0;
+            float bestIncrease = Float.MAX_VALUE;
+            float bestArea = Float.MAX_VALUE;
+            for (int i = 0; i < children.length; i++) {
+                final float increase = children[i].areaIncrease(x1, y1, x2, y2);
+                final float area = children[i].area();
+                if (increase < bestIncrease || increase == bestIncrease && area < bestArea) {
+                    best = i;
+                    bestIncrease = increase;
+                    bestArea = area;
+                }
+            }
+            final LongNode[] replacements = children[best].add(id, x1, y1, x2, y2, maxChildren);
+            final int n = children.length - 1 + replacements.length;
+            final LongNode[] children2 = new LongNode[n];
+            System.arraycopy(children, 0, children2, 0, best);
+            System.arraycopy(replacements, 0, children2, best, replacements.length);
+            System.arraycopy(children, best + 1, children2, best + replacements.length,
+                    children.length - best - 1);
+            if (n <= maxChildren)
+                return new LongNode[] { new LongNonLeaf(children2) };
+            final float[] mbrs = new float[4 * n];
+            for (int i = 0; i < n; i++) {
+                mbrs[4 * i] = children2[i].x1;
+                mbrs[4 * i + 1] = children2[i].y1;
+                mbrs[4 * i + 2] = children2[i].x2;
+                mbrs[4 * i + 3] = children2[i].y2;
+            }
+            final int[] order = splitOrder(mbrs);
+            final int half = n / 2;
+            return new LongNode[] { nonLeaf(children2, order, 0, half),
+                    nonLeaf(children2, order, half, n) };
+        }
+
+        private static LongNonLeaf nonLeaf(LongNode[] children, int[] order, int from, int to) {
+            final LongNode[] children2 = new LongNode[to - from];
+            for (int i = from; i < to; i++)
+                children2[i - from] = children[order[i]];
+            return new LongNonLeaf(children2);
+        }
+
+        @Override
+        LongNode delete(long id, float x1, float y1, float x2, float y2) {
+            for (int i = 0; i < children.length; i++) {
+                final LongNode child = children[i];
+                if (child.contains(x1, y1, x2, y2)) {
+                    final LongNode child2 = child.delete(id, x1, y1, x2, y2);
+                    if (child2 != child) {
+                        if (child2 != null) {
+                            final LongNode[] children2 = children.clone();
+                            children2[i] = child2;
+                            return new LongNonLeaf(children2);
+                        } else if (children.length == 1)
+                            return null;
+                        else {
+                            final LongNode[] children2 = new LongNode[children.length - 1];
+                            System.arraycopy(children, 0, children2, 0, i);
+                            System.arraycopy(children, i + 1, children2, i, children.length
+                                    - 1 - i);
+                            return new LongNonLeaf(children2);
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int search(float x1, float y1, float x2, float y2, Visitor visitor) {
+            if (!intersects(x1, y1, x2, y2, this.x1, this.y1, this.x2, this.y2))
+                return 0;
+            int count = 0;
+            for (final LongNode child : children)
+                count += child.search(x1, y1, x2, y2, visitor);
+            return count;
+        }
+
+        private static float x1(LongNode[] nodes) {
+            float x = nodes[0].x1;
+            for (LongNode node : nodes)
+                x = Math.min(x, node.x1);
+            return x;
+        }
+
+        private static float y1(LongNode[] nodes) {
+            float y = nodes[0].y1;
+            for (LongNode node : nodes)
+                y = Math.min(y, node.y1);
+            return y;
+        }
+
+        private static float x2(LongNode[] nodes) {
+            float x = nodes[0].x2;
+            for (LongNode node : nodes)
+                x = Math.max(x, node.x2);
+            return x;
+        }
+
+        private static float y2(LongNode[] nodes) {
+            float y = nodes[0].y2;
+            for (LongNode node : nodes)
+                y = Math.max(y, node.y2);
+            return y;
+        }
+    }
+
+    /**
+     * Returns the indexes of the rectangles sorted by centre along the axis on
+     * which the centres are most spread.
+     */
+    private static int[] splitOrder(float[] mbrs) {
+        final int n = mbrs.length / 4;
+        final float[] cx = new float[n];
+        final float[] cy = new float[n];
+        float minX = Float.MAX_VALUE, maxX = -Float.MAX_VALUE;
+        float minY = Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            cx[i] = (mbrs[4 * i] + mbrs[4 * i + 2]) / 2;
+            cy[i] = (mbrs[4 * i + 1] + mbrs[4 * i + 3]) / 2;
+            minX = Math.min(minX, cx[i]);
+            maxX = Math.max(maxX, cx[i]);
+            minY = Math.min(minY, cy[i]);
+            maxY = Math.max(maxY, cy[i]);
+        }
+        return IndexPacker.order(maxX - minX >= maxY - minY ? cx : cy);
+    }
+
+}
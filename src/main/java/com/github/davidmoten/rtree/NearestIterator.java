@@ -0,0 +1,132 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * Best-first nearest neighbour search (Hjaltason and Samet). Nodes and
+ * entries wait in one priority queue ordered by their distance from the
+ * rectangle (the distance of a node being the distance of its mbr). When an
+ * entry reaches the head of the queue no unexpanded node can contain a nearer
+ * entry so it is the next nearest. Only nodes nearer than the next result are
+ * expanded and nothing is done until the next entry is requested. Not thread
+ * safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class NearestIterator<T, S extends Geometry> implements Iterator<Entry<T, S>> {
+
+    private final Rectangle r;
+    private final double maxDistance;
+    private final PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(16,
+            CANDIDATE_COMPARATOR);
+    private int remaining;
+    private Entry<T, S> next;
+
+    /**
+     * Constructor.
+     * 
+     * @param root
+     *            root node of the tree if present
+     * @param r
+     *            rectangle to measure distance from
+     * @param maxDistance
+     *            entries must be strictly less than this distance from r
+     * @param maxCount
+     *            max number of entries to return
+     */
+    NearestIterator(Optional<? extends Node<T, S>> root, Rectangle r, double maxDistance,
+            int maxCount) {
+        this.r = r;
+        this.maxDistance = maxDistance;
+        this.remaining = maxCount;
+        if (root.isPresent())
+            offer(root.get().geometry().distance(r), root.get(), false);
+    }
+
+    private void offer(double distance, Object item, boolean isEntry) {
+        if (distance < maxDistance)
+            queue.offer(new Candidate(distance, item, isEntry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<T, S> computeNext() {
+        if (remaining <= 0)
+            return null;
+        Candidate c;
+        while ((c = queue.poll()) != null) {
+            if (c.isEntry) {
+                remaining--;
+                if (remaining == 0)
+                    queue.clear();
+                return (Entry<T, S>) c.item;
+            } else if (c.item instanceof Leaf) {
+                for (Entry<T, S> entry : ((Leaf<T, S>) c.item).entries())
+                    offer(entry.geometry().distance(r), entry, true);
+            } else {
+                for (Node<T, S> child : ((NonLeaf<T, S>) c.item).children())
+                    offer(child.geometry().distance(r), child, false);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = computeNext();
+        return next != null;
+    }
+
+    @Override
+    public Entry<T, S> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        final Entry<T, S> result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final class Candidate {
+        final double distance;
+        // a Node or an Entry
+        final Object item;
+        final boolean isEntry;
+
+        Candidate(double distance, Object item, boolean isEntry) {
+            this.distance = distance;
+            this.item = item;
+            this.isEntry = isEntry;
+        }
+    }
+
+    private static final Comparator<Candidate> CANDIDATE_COMPARATOR = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            int result = Double.compare(a.distance, b.distance);
+            if (result != 0)
+                return result;
+            else if (a.isEntry == b.isEntry)
+                return 0;
+            else
+                // entries before nodes at the same distance so that they
+                // are returned without expanding the node
+                return a.isEntry ? -1 : 1;
+        }
+    };
+
+}
@@ -0,0 +1,239 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * All-k-nearest-neighbour join. The entries of each outer leaf find their k
+ * nearest inner entries together in one best-first traversal of the inner
+ * tree ordered by distance from the mbr of the outer leaf. The traversal stops
+ * once the next inner node is no nearer to the leaf mbr than the largest
+ * current k-th nearest distance of the leaf's entries, which bounds the
+ * distance of every entry of the leaf from anything further away. Each inner
+ * entry reached is only measured against the outer entries whose own bound it
+ * passes. The results of one outer leaf are buffered. Not thread safe.
+ *
+ * @param <T>
+ *            the value type of the outer tree
+ * @param <S>
+ *            the geometry type of the outer tree
+ * @param <U>
+ *            the value type of the inner tree
+ * @param <R>
+ *            the geometry type of the inner tree
+ */
+final class NearestJoinIterator<T, S extends Geometry, U, R extends Geometry> implements
+        Iterator<EntryPair<T, S, U, R>> {
+
+    private final List<Leaf<T, S>> outerLeaves;
+    private final Optional<? extends Node<U, R>> innerRoot;
+    private final int k;
+    private final PriorityQueue<NodeCandidate<U, R>> queue = new PriorityQueue<NodeCandidate<U, R>>(
+            16, NodeCandidate.COMPARATOR);
+    private int leafIndex;
+    // the results of the last outer leaf not yet returned
+    private final List<EntryPair<T, S, U, R>> buffer = new ArrayList<EntryPair<T, S, U, R>>();
+    private int bufferIndex;
+    // the k nearest so far of each outer entry of the current leaf in
+    // ascending order of distance (k slots per outer entry)
+    private double[] distances = new double[0];
+    private Object[] neighbours = new Object[0];
+    private int[] counts = new int[0];
+    private final LeafMbrs leafMbrs = new LeafMbrs();
+    private EntryPair<T, S, U, R> next;
+    private boolean computed;
+
+    /**
+     * Constructor.
+     *
+     * @param outerLeaves
+     *            the leaves of the outer tree whose entries are joined
+     * @param innerRoot
+     *            root of the inner tree if present
+     * @param k
+     *            max number of nearest inner entries per outer entry
+     */
+    NearestJoinIterator(List<Leaf<T, S>> outerLeaves, Optional<? extends Node<U, R>> innerRoot,
+            int k) {
+        this.outerLeaves = outerLeaves;
+        this.innerRoot = innerRoot;
+        this.k = k;
+    }
+
+    /**
+     * Returns the leaves of the tree in depth-first order.
+     */
+    static <T, S extends Geometry> List<Leaf<T, S>> leaves(Optional<? extends Node<T, S>> root) {
+        final List<Leaf<T, S>> leaves = new ArrayList<Leaf<T, S>>();
+        if (root.isPresent())
+            addLeaves(root.get(), leaves);
+        return leaves;
+    }
+
+    private static <T, S extends Geometry> void addLeaves(Node<T, S> node, List<Leaf<T, S>> leaves) {
+        if (node instanceof Leaf)
+            leaves.add((Leaf<T, S>) node);
+        else
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                addLeaves(child, leaves);
+    }
+
+    private EntryPair<T, S, U, R> computeNext() {
+        while (bufferIndex == buffer.size()) {
+            buffer.clear();
+            bufferIndex = 0;
+            if (leafIndex == outerLeaves.size() || !innerRoot.isPresent() || k <= 0)
+                return null;
+            join(outerLeaves.get(leafIndex++));
+        }
+        return buffer.get(bufferIndex++);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void join(Leaf<T, S> leaf) {
+        final int n = leaf.count();
+        if (counts.length < n) {
+            distances = new double[n * k];
+            neighbours = new Object[n * k];
+            counts = new int[n];
+        }
+        for (int i = 0; i < n; i++)
+            counts[i] = 0;
+        final Rectangle m = leaf.geometry().mbr();
+        final float[] outerMbrs = leafMbrs.of(leaf);
+        double bound = Double.POSITIVE_INFINITY;
+        queue.offer(new NodeCandidate<U, R>(innerRoot.get().geometry().distance(m), innerRoot
+                .get()));
+        NodeCandidate<U, R> c;
+        while ((c = queue.poll()) != null && c.distance < bound) {
+            if (c.node instanceof Leaf) {
+                final Leaf<U, R> inner = (Leaf<U, R>) c.node;
+                final float[] innerMbrs = leafMbrs.of(inner);
+                for (int j = 0; j < inner.count(); j++) {
+                    final int q = 4 * j;
+                    if (distanceSquared(innerMbrs, q, m.x1(), m.y1(), m.x2(), m.y2()) >= bound
+                            * bound)
+                        continue;
+                    final Entry<U, R> candidate = inner.entries().get(j);
+                    for (int i = 0; i < n; i++) {
+                        final int p = 4 * i;
+                        final double kth = kth(i);
+                        if (distanceSquared(innerMbrs, q, outerMbrs[p], outerMbrs[p + 1],
+                                outerMbrs[p + 2], outerMbrs[p + 3]) < kth * kth) {
+                            final double d = candidate.geometry().distance(
+                                    leaf.entries().get(i).geometry().mbr());
+                            if (d < kth)
+                                insert(i, d, candidate);
+                        }
+                    }
+                }
+                bound = bound(n);
+            } else {
+                for (Node<U, R> child : ((NonLeaf<U, R>) c.node).children()) {
+                    final double d = child.geometry().distance(m);
+                    if (d < bound)
+                        queue.offer(new NodeCandidate<U, R>(d, child));
+                }
+            }
+        }
+        queue.clear();
+        for (int i = 0; i < n; i++) {
+            final Entry<T, S> outer = leaf.entries().get(i);
+            for (int j = 0; j < counts[i]; j++)
+                buffer.add(new EntryPair<T, S, U, R>(outer, (Entry<U, R>) neighbours[i * k + j]));
+        }
+    }
+
+    /**
+     * Returns the k-th nearest distance so far of outer entry i or infinity
+     * if it has fewer than k.
+     */
+    private double kth(int i) {
+        if (counts[i] < k)
+            return Double.POSITIVE_INFINITY;
+        else
+            return distances[i * k + k - 1];
+    }
+
+    /**
+     * Returns the largest k-th nearest distance of the outer entries.
+     */
+    private double bound(int n) {
+        double bound = 0;
+        for (int i = 0; i < n; i++)
+            bound = Math.max(bound, kth(i));
+        return bound;
+    }
+
+    private void insert(int i, double distance, Object neighbour) {
+        final int base = i * k;
+        // insertion into the sorted slots, dropping the k-th if full
+        int j = Math.min(counts[i], k - 1);
+        while (j > 0 && distances[base + j - 1] > distance) {
+            distances[base + j] = distances[base + j - 1];
+            neighbours[base + j] = neighbours[base + j - 1];
+            j--;
+        }
+        distances[base + j] = distance;
+        neighbours[base + j] = neighbour;
+        if (counts[i] < k)
+            counts[i]++;
+    }
+
+    private static double distanceSquared(float[] mbrs, int p, float x1, float y1, float x2,
+            float y2) {
+        final double dx = Math.max(0, (double) Math.max(mbrs[p], x1) - Math.min(mbrs[p + 2], x2));
+        final double dy = Math.max(0,
+                (double) Math.max(mbrs[p + 1], y1) - Math.min(mbrs[p + 3], y2));
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!computed) {
+            next = computeNext();
+            computed = true;
+        }
+        return next != null;
+    }
+
+    @Override
+    public EntryPair<T, S, U, R> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        computed = false;
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private static final class NodeCandidate<U, R extends Geometry> {
+        final double distance;
+        final Node<U, R> node;
+
+        NodeCandidate(double distance, Node<U, R> node) {
+            this.distance = distance;
+            this.node = node;
+        }
+
+        @SuppressWarnings("rawtypes")
+        static final Comparator<NodeCandidate> COMPARATOR = new Comparator<NodeCandidate>() {
+            @Override
+            public int compare(NodeCandidate a, NodeCandidate b) {
+                return Double.compare(a.distance, b.distance);
+            }
+        };
+    }
+
+}
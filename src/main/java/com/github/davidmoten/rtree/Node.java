@@ -7,16 +7,81 @@ import rx.functions.Func1;
 
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
 
 interface Node<T, S extends Geometry> extends HasGeometry {
 
     List<Node<T, S>> add(Entry<? extends T, ? extends S> entry);
 
+    /**
+     * Returns the nodes that replace this node once all the given entries have
+     * been added to it. Each descendant node is rebuilt at most once no matter
+     * how many of the entries end up beneath it.
+     * 
+     * @param entries
+     *            entries to add, must not be empty
+     * @return the replacement nodes each with at most maxChildren children
+     */
+    List<Node<T, S>> addAll(List<Entry<T, S>> entries);
+
     NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all);
 
     void search(Func1<? super Geometry, Boolean> condition,
             Subscriber<? super Entry<T, S>> subscriber);
 
+    /**
+     * Passes the entries below this node whose geometry intersects the
+     * rectangle to the visitor. The caller has already checked that the mbr
+     * of this node intersects the rectangle.
+     * 
+     * @param r
+     *            rectangle to search
+     * @param visitor
+     *            receives the matching entries
+     * @return the number of matching entries
+     */
+    int search(Rectangle r, RTree.Visitor<T, S> visitor);
+
+    /**
+     * Returns the number of entries below this node whose geometry intersects
+     * the rectangle. The caller has already checked that the mbr of this node
+     * intersects the rectangle.
+     * 
+     * @param r
+     *            rectangle to search
+     * @return the number of matching entries
+     */
+    int count(Rectangle r);
+
     int count();
 
+    /**
+     * Returns the aggregate of the values of the entries below this node
+     * cached when the node was built, or null if the context has no
+     * {@link Aggregation}. An aggregation may itself yield null so use the
+     * context, not this value, to tell whether there is one.
+     * 
+     * @return the cached aggregate or null
+     */
+    Object aggregate();
+
+    /**
+     * Returns the aggregate of the values of the entries below this node whose
+     * geometry intersects the rectangle. The context must have an
+     * {@link Aggregation} and the caller has already checked that the mbr of
+     * this node intersects the rectangle.
+     * 
+     * @param r
+     *            rectangle to search
+     * @return the aggregate of the matching entry values
+     */
+    Object aggregate(Rectangle r);
+
+    /**
+     * Returns the number of entries in the subtree rooted at this node.
+     * 
+     * @return the number of entries below this node
+     */
+    int entryCount();
+
 }
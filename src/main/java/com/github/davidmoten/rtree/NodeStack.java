@@ -0,0 +1,80 @@
+package com.github.davidmoten.rtree;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+/**
+ * A mutable stack of nodes being visited by a depth-first search together
+ * with the index of the next child (or entry) to visit in each node. Backed
+ * by arrays that grow as needed so that pushing and popping allocates
+ * nothing. Not thread safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class NodeStack<T, S extends Geometry> {
+
+    private Node<T, S>[] nodes;
+    private int[] positions;
+    private int size;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    NodeStack() {
+        this.nodes = new Node[8];
+        this.positions = new int[8];
+    }
+
+    static <T, S extends Geometry> NodeStack<T, S> create(Node<T, S> node) {
+        NodeStack<T, S> stack = new NodeStack<T, S>();
+        stack.push(node);
+        return stack;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Pushes the node with position 0.
+     * 
+     * @param node
+     *            node to push
+     */
+    void push(Node<T, S> node) {
+        if (size == nodes.length) {
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Node<T, S>[] nodes2 = new Node[size * 2];
+            System.arraycopy(nodes, 0, nodes2, 0, size);
+            nodes = nodes2;
+            int[] positions2 = new int[size * 2];
+            System.arraycopy(positions, 0, positions2, 0, size);
+            positions = positions2;
+        }
+        nodes[size] = node;
+        positions[size] = 0;
+        size++;
+    }
+
+    void pop() {
+        nodes[--size] = null;
+    }
+
+    void clear() {
+        while (size > 0)
+            pop();
+    }
+
+    Node<T, S> node() {
+        return nodes[size - 1];
+    }
+
+    int position() {
+        return positions[size - 1];
+    }
+
+    void setPosition(int position) {
+        positions[size - 1] = position;
+    }
+
+}
@@ -4,7 +4,9 @@ import static com.google.common.base.Optional.of;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import rx.Subscriber;
 import rx.functions.Func1;
@@ -19,6 +21,13 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
 
     private final List<? extends Node<T, S>> children;
     private final Rectangle mbr;
+    // the child mbrs quantized relative to mbr (4 per child) if
+    // context.quantizeChildMbrs() is true, otherwise null
+    private final short[] childBounds;
+    // the number of entries in this subtree
+    private final int entryCount;
+    // the aggregate of the entry values if the context has an aggregation
+    private final Object aggregate;
     private final Context context;
 
     NonLeaf(List<? extends Node<T, S>> children, Context context) {
@@ -26,6 +35,26 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
         this.context = context;
         this.children = children;
         this.mbr = Util.mbr(children);
+        this.childBounds = quantize(children, mbr, context);
+        this.entryCount = entryCount(children);
+        this.aggregate = context.aggregateNodes(children);
+    }
+
+    private static int entryCount(List<? extends Node<?, ?>> children) {
+        int count = 0;
+        for (int i = 0; i < children.size(); i++)
+            count += children.get(i).entryCount();
+        return count;
+    }
+
+    static <T, S extends Geometry> Func1<List<Node<T, S>>, Node<T, S>> factory(
+            final Context context) {
+        return new Func1<List<Node<T, S>>, Node<T, S>>() {
+            @Override
+            public Node<T, S> call(List<Node<T, S>> children) {
+                return new NonLeaf<T, S>(children, context);
+            }
+        };
     }
 
     @Override
@@ -40,6 +69,17 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
         if (!criterion.call(this.geometry().mbr()))
             return;
 
+        if (childBounds != null && criterion instanceof BoundsCondition) {
+            final BoundsCondition bounds = (BoundsCondition) criterion;
+            for (int i = 0; i < children.size(); i++) {
+                if (subscriber.isUnsubscribed())
+                    return;
+                else if (quantizedMatches(i, bounds))
+                    children.get(i).search(criterion, subscriber);
+            }
+            return;
+        }
+
         for (final Node<T, S> child : children) {
             if (subscriber.isUnsubscribed())
                 return;
@@ -48,11 +88,137 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
         }
     }
 
+    @Override
+    public int search(Rectangle r, RTree.Visitor<T, S> visitor) {
+        int count = 0;
+        for (int i = 0; i < children.size(); i++) {
+            final Node<T, S> child = children.get(i);
+            if (child.geometry().mbr().intersects(r))
+                count += child.search(r, visitor);
+        }
+        return count;
+    }
+
+    @Override
+    public int count(Rectangle r) {
+        int count = 0;
+        for (int i = 0; i < children.size(); i++) {
+            final Node<T, S> child = children.get(i);
+            final Rectangle childMbr = child.geometry().mbr();
+            // every entry geometry lies within its mbr so a child contained
+            // by r matches entirely
+            if (r.contains(childMbr))
+                count += child.entryCount();
+            else if (childMbr.intersects(r))
+                count += child.count(r);
+        }
+        return count;
+    }
+
+    /**
+     * Returns false if the child at index i cannot contain a match for the
+     * condition. If child mbrs are quantized and the condition is a
+     * {@link BoundsCondition} only the quantized mbr is tested (it contains
+     * the exact mbr) so the child itself is not read.
+     * 
+     * @param i
+     *            index of the child
+     * @param condition
+     *            search condition
+     * @return false if the child can be skipped
+     */
+    boolean childMatches(int i, Func1<? super Geometry, Boolean> condition) {
+        if (childBounds != null && condition instanceof BoundsCondition)
+            return quantizedMatches(i, (BoundsCondition) condition);
+        else
+            return condition.call(children.get(i).geometry());
+    }
+
+    private boolean quantizedMatches(int i, BoundsCondition bounds) {
+        final short[] q = childBounds;
+        final int j = 4 * i;
+        return bounds.test(dequantize(q[j], mbr.x1(), mbr.x2()),
+                dequantize(q[j + 1], mbr.y1(), mbr.y2()), dequantize(q[j + 2], mbr.x1(), mbr.x2()),
+                dequantize(q[j + 3], mbr.y1(), mbr.y2()));
+    }
+
+    private static final int QUANTA = 0xffff;
+
+    /**
+     * Returns the child mbrs as 16 bit offsets relative to the parent mbr,
+     * rounded outwards so that each dequantized mbr contains the child mbr.
+     */
+    private static short[] quantize(List<? extends Node<?, ?>> children, Rectangle mbr,
+            Context context) {
+        if (!context.quantizeChildMbrs())
+            return null;
+        final short[] q = new short[4 * children.size()];
+        for (int i = 0; i < children.size(); i++) {
+            final Rectangle r = children.get(i).geometry().mbr();
+            q[4 * i] = quantizeBelow(r.x1(), mbr.x1(), mbr.x2());
+            q[4 * i + 1] = quantizeBelow(r.y1(), mbr.y1(), mbr.y2());
+            q[4 * i + 2] = quantizeAbove(r.x2(), mbr.x1(), mbr.x2());
+            q[4 * i + 3] = quantizeAbove(r.y2(), mbr.y1(), mbr.y2());
+        }
+        return q;
+    }
+
+    private static short quantizeBelow(float x, float min, float max) {
+        int k = (int) Math.floor((double) (x - min) / (max - min) * QUANTA);
+        k = Math.max(0, Math.min(QUANTA, k));
+        // correct for float rounding in dequantize
+        while (k > 0 && dequantize((short) k, min, max) > x)
+            k--;
+        return (short) k;
+    }
+
+    private static short quantizeAbove(float x, float min, float max) {
+        int k = (int) Math.ceil((double) (x - min) / (max - min) * QUANTA);
+        k = Math.max(0, Math.min(QUANTA, k));
+        while (k < QUANTA && dequantize((short) k, min, max) < x)
+            k++;
+        return (short) k;
+    }
+
+    private static float dequantize(short q, float min, float max) {
+        final int k = q & QUANTA;
+        if (k == QUANTA)
+            return max;
+        else
+            return min + k * (max - min) / QUANTA;
+    }
+
     @Override
     public int count() {
         return children.size();
     }
 
+    @Override
+    public int entryCount() {
+        return entryCount;
+    }
+
+    @Override
+    public Object aggregate() {
+        return aggregate;
+    }
+
+    @Override
+    public Object aggregate(Rectangle r) {
+        final Aggregation<Object, Object> a = context.uncheckedAggregation();
+        Object result = a.empty();
+        for (int i = 0; i < children.size(); i++) {
+            final Node<T, S> child = children.get(i);
+            final Rectangle childMbr = child.geometry().mbr();
+            // as for count(Rectangle) a child contained by r matches entirely
+            if (r.contains(childMbr))
+                result = a.combine(result, child.aggregate());
+            else if (childMbr.intersects(r))
+                result = a.combine(result, child.aggregate(r));
+        }
+        return result;
+    }
+
     List<? extends Node<T, S>> children() {
         return children;
     }
@@ -71,6 +237,36 @@ final class NonLeaf<T, S extends Geometry> implements Node<T, S> {
         }
     }
 
+    @Override
+    public List<Node<T, S>> addAll(List<Entry<T, S>> entries) {
+        // group the entries by the child they would be added to so that each
+        // child is descended into and rebuilt only once
+        final Map<Node<T, S>, List<Entry<T, S>>> groups = new IdentityHashMap<Node<T, S>, List<Entry<T, S>>>();
+        for (final Entry<T, S> entry : entries) {
+            final Node<T, S> child = context.selector().select(entry.geometry().mbr(), children);
+            List<Entry<T, S>> group = groups.get(child);
+            if (group == null) {
+                group = new ArrayList<Entry<T, S>>();
+                groups.put(child, group);
+            }
+            group.add(entry);
+        }
+        final List<Node<T, S>> children2 = new ArrayList<Node<T, S>>(children.size()
+                + groups.size());
+        for (final Node<T, S> child : children) {
+            final List<Entry<T, S>> group = groups.get(child);
+            if (group == null)
+                // untouched children are shared with this node
+                children2.add(child);
+            else
+                children2.addAll(child.addAll(group));
+        }
+        final List<Node<T, S>> list = new ArrayList<Node<T, S>>();
+        for (List<Node<T, S>> group : Util.split(children2, context))
+            list.add(new NonLeaf<T, S>(group, context));
+        return list;
+    }
+
     private List<Node<T, S>> makeNonLeaves(ListPair<? extends Node<T, S>> pair) {
         List<Node<T, S>> list = new ArrayList<Node<T, S>>();
         list.add(new NonLeaf<T, S>(pair.group1().list(), context));
@@ -0,0 +1,75 @@
+package com.github.davidmoten.rtree;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+
+/**
+ * A read-only copy of an {@link RTree} whose nodes are stored outside the Java
+ * heap in direct {@link ByteBuffer}s. Only the entries themselves stay on the
+ * heap (in one array indexed by entry number) so a large tree contributes a
+ * handful of objects rather than several per node to the work of the garbage
+ * collector. Obtain one using {@link RTree#offHeap()}.
+ *
+ * <p>
+ * Each node is a 24 byte record holding its mbr (four floats) and the start
+ * and end (exclusive) of its children as two ints. Nodes are in breadth-first
+ * order (see {@link FlatLayout}) so children are found by offset. The mbr of
+ * each entry is stored in a second buffer so that entries need only be
+ * dereferenced when their mbr matches a search.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class OffHeapRTree<T, S extends Geometry> extends AbstractFlatRTree<T, S> {
+
+    private static final int NODE_BYTES = 24;
+    private static final int ENTRY_BYTES = 16;
+
+    private final ByteBuffer nodes;
+    private final ByteBuffer entryMbrs;
+
+    private OffHeapRTree(FlatLayout<T, S> layout) {
+        super(layout);
+        this.nodes = ByteBuffer.allocateDirect(NODE_BYTES * numNodes).order(
+                ByteOrder.nativeOrder());
+        for (int i = 0; i < numNodes; i++) {
+            for (int k = 0; k < 4; k++)
+                nodes.putFloat(layout.nodeMbrs[4 * i + k]);
+            nodes.putInt(layout.offsets[2 * i]);
+            nodes.putInt(layout.offsets[2 * i + 1]);
+        }
+        this.entryMbrs = ByteBuffer.allocateDirect(ENTRY_BYTES * entries.length).order(
+                ByteOrder.nativeOrder());
+        for (float f : layout.entryMbrs)
+            entryMbrs.putFloat(f);
+    }
+
+    static <T, S extends Geometry> OffHeapRTree<T, S> create(RTree<T, S> tree) {
+        return new OffHeapRTree<T, S>(FlatLayout.create(tree.root()));
+    }
+
+    @Override
+    float nodeMbr(int node, int k) {
+        return nodes.getFloat(node * NODE_BYTES + 4 * k);
+    }
+
+    @Override
+    int childrenStart(int node) {
+        return nodes.getInt(node * NODE_BYTES + 16);
+    }
+
+    @Override
+    int childrenEnd(int node) {
+        return nodes.getInt(node * NODE_BYTES + 20);
+    }
+
+    @Override
+    float entryMbr(int entry, int k) {
+        return entryMbrs.getFloat(entry * ENTRY_BYTES + 4 * k);
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.github.davidmoten.rtree;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import rx.Observable.OnSubscribe;
+import rx.Producer;
+import rx.Subscriber;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * Emits all entries of a tree in ascending order of distance from a
+ * rectangle using a {@link NearestIterator}. Unlike
+ * <code>Observable.from(Iterable)</code> the next entry is not looked for
+ * until it has been requested so nodes are only expanded as demand arrives.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class OnSubscribeNearest<T, S extends Geometry> implements OnSubscribe<Entry<T, S>> {
+
+    private final Optional<? extends Node<T, S>> root;
+    private final Rectangle r;
+
+    OnSubscribeNearest(Optional<? extends Node<T, S>> root, Rectangle r) {
+        this.root = root;
+        this.r = r;
+    }
+
+    @Override
+    public void call(Subscriber<? super Entry<T, S>> subscriber) {
+        subscriber.setProducer(new NearestProducer<T, S>(new NearestIterator<T, S>(root, r,
+                Double.POSITIVE_INFINITY, Integer.MAX_VALUE), subscriber));
+    }
+
+    private static final class NearestProducer<T, S extends Geometry> implements Producer {
+
+        private final NearestIterator<T, S> it;
+        private final Subscriber<? super Entry<T, S>> subscriber;
+        private final AtomicLong requested = new AtomicLong(0);
+
+        NearestProducer(NearestIterator<T, S> it, Subscriber<? super Entry<T, S>> subscriber) {
+            this.it = it;
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            try {
+                if (n <= 0 || requested.get() == Long.MAX_VALUE)
+                    // none requested or already emitting everything
+                    return;
+                else if (n == Long.MAX_VALUE && requested.compareAndSet(0, Long.MAX_VALUE))
+                    requestAll();
+                else
+                    requestSome(n);
+            } catch (RuntimeException e) {
+                subscriber.onError(e);
+            }
+        }
+
+        private void requestAll() {
+            while (!subscriber.isUnsubscribed()) {
+                if (it.hasNext())
+                    subscriber.onNext(it.next());
+                else {
+                    subscriber.onCompleted();
+                    return;
+                }
+            }
+        }
+
+        private void requestSome(long n) {
+            // same drain loop as OnSubscribeSearch, only the thread that
+            // moves requested up from zero emits
+            if (requested.getAndAdd(n) == 0) {
+                while (true) {
+                    long r = requested.get();
+                    for (long i = 0; i < r; i++) {
+                        if (subscriber.isUnsubscribed())
+                            return;
+                        else if (it.hasNext())
+                            subscriber.onNext(it.next());
+                        else {
+                            subscriber.onCompleted();
+                            return;
+                        }
+                    }
+                    if (requested.addAndGet(-r) == 0)
+                        return;
+                }
+            }
+        }
+    }
+
+}
@@ -8,7 +8,6 @@ import rx.Subscriber;
 import rx.functions.Func1;
 
 import com.github.davidmoten.rtree.geometry.Geometry;
-import com.github.davidmoten.util.ImmutableStack;
 import com.google.common.annotations.VisibleForTesting;
 
 final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entry<T, S>> {
@@ -32,7 +31,10 @@ final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entr
         private final Subscriber<? super Entry<T, S>> subscriber;
         private final Node<T, S> node;
         private final Func1<? super Geometry, Boolean> condition;
-        private volatile ImmutableStack<NodePosition<T, S>> stack;
+        // only accessed by the thread that moves requested up from zero so
+        // the atomic updates of requested make its changes visible to the
+        // next such thread
+        private final NodeStack<T, S> stack;
         private final AtomicLong requested = new AtomicLong(0);
 
         SearchProducer(Node<T, S> node, Func1<? super Geometry, Boolean> condition,
@@ -40,7 +42,7 @@ final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entr
             this.node = node;
             this.condition = condition;
             this.subscriber = subscriber;
-            stack = ImmutableStack.create(new NodePosition<T, S>(node, 0));
+            this.stack = NodeStack.create(node);
         }
 
         @Override
@@ -75,24 +77,18 @@ final class OnSubscribeSearch<T, S extends Geometry> implements OnSubscribe<Entr
             // but benchmarks showed no benefit here so reverted to AtomicLong
             long previousCount = requested.getAndAdd(n);
             if (previousCount == 0) {
-                // don't touch stack every time during the loop because
-                // is a volatile and every write forces a thread memory
-                // cache flush
-                ImmutableStack<NodePosition<T, S>> st = stack;
                 while (true) {
                     long r = requested.get();
-                    long numToEmit = r;
-
-                    st = Backpressure.search(condition, subscriber, st, numToEmit);
-                    if (st.isEmpty()) {
-                        if (!subscriber.isUnsubscribed()) {
+                    Backpressure.search(condition, subscriber, stack, r);
+                    if (stack.isEmpty()) {
+                        // requested stays above zero so this is not reached
+                        // again by a later request
+                        if (!subscriber.isUnsubscribed())
                             subscriber.onCompleted();
-                        } else
-                            break;
+                        break;
                     } else if (requested.addAndGet(-r) == 0)
                         break;
                 }
-                stack = st;
             }
         }
     }
@@ -0,0 +1,27 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+
+/**
+ * The heuristic used when bulk loading an {@link RTree} to group items into
+ * nodes.
+ */
+public interface Packer {
+
+    /**
+     * Partitions the items into groups of at most maxSize items where each
+     * group will become the children of one node of the R-tree. The given list
+     * is not modified.
+     *
+     * @param <T>
+     *            geometry type
+     * @param items
+     *            items to group
+     * @param maxSize
+     *            max size of each group
+     * @return groups of items
+     */
+    <T extends HasGeometry> List<List<T>> pack(List<T> items, int maxSize);
+}
@@ -0,0 +1,109 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Hilbert packing as described in Kamel and Faloutsos, "On Packing R-trees"
+ * (1993). Items are sorted by the position of the centre of their minimum
+ * bounding rectangle along a Hilbert curve covering the bounds of all the items
+ * and then consecutive runs of items are grouped.
+ */
+public final class PackerHilbert implements Packer {
+
+    /**
+     * The Hilbert curve is of this order, i.e. it fills a grid of 2^ORDER by
+     * 2^ORDER cells.
+     */
+    private static final int ORDER = 16;
+
+    private static final int MAX_ORDINATE = (1 << ORDER) - 1;
+
+    @Override
+    public <T extends HasGeometry> List<List<T>> pack(List<T> items, int maxSize) {
+        Preconditions.checkArgument(maxSize > 0);
+        if (items.isEmpty())
+            return new ArrayList<List<T>>();
+        final Rectangle bounds = Util.mbr(items);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final Keyed<T>[] keyed = new Keyed[items.size()];
+        for (int i = 0; i < keyed.length; i++)
+            keyed[i] = keyed(items.get(i), bounds);
+        Arrays.sort(keyed);
+        final List<T> list = new ArrayList<T>(keyed.length);
+        for (Keyed<T> k : keyed)
+            list.add(k.item);
+        return Util.partition(list, maxSize);
+    }
+
+    /**
+     * Returns the item with the distance along the Hilbert curve covering the
+     * given bounds of the centre of its mbr.
+     */
+    static <T extends HasGeometry> Keyed<T> keyed(T item, Rectangle bounds) {
+        final Rectangle r = item.geometry().mbr();
+        final int x = scale((r.x1() + r.x2()) / 2 - bounds.x1(), bounds.x2() - bounds.x1());
+        final int y = scale((r.y1() + r.y2()) / 2 - bounds.y1(), bounds.y2() - bounds.y1());
+        return new Keyed<T>(index(x, y), item);
+    }
+
+    private static int scale(float offset, float range) {
+        if (range == 0)
+            return 0;
+        else
+            return Math.max(0, Math.min(MAX_ORDINATE, Math.round(offset / range * MAX_ORDINATE)));
+    }
+
+    /**
+     * Returns the distance along a Hilbert curve of order {@link #ORDER} of the
+     * cell (x, y).
+     *
+     * @param x
+     *            x ordinate of cell between 0 and 2^ORDER - 1
+     * @param y
+     *            y ordinate of cell between 0 and 2^ORDER - 1
+     * @return distance along the curve
+     */
+    @VisibleForTesting
+    static long index(int x, int y) {
+        long d = 0;
+        for (int s = 1 << (ORDER - 1); s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant so the curve is continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = MAX_ORDINATE - x;
+                    y = MAX_ORDINATE - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+
+    static final class Keyed<T> implements Comparable<Keyed<T>> {
+        private final long key;
+        final T item;
+
+        Keyed(long key, T item) {
+            this.key = key;
+            this.item = item;
+        }
+
+        @Override
+        public int compareTo(Keyed<T> other) {
+            return key < other.key ? -1 : (key == other.key ? 0 : 1);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+
+/**
+ * Sort-Tile-Recursive packing as described in Leutenegger, Lopez and Edgington,
+ * "STR: A Simple and Efficient Algorithm for R-Tree Packing" (1997). Items are
+ * sorted by the x coordinate of their centre and cut into vertical slices, then
+ * each slice is sorted by the y coordinate of the centre and cut into groups.
+ */
+public final class PackerStr implements Packer {
+
+    @Override
+    public <T extends HasGeometry> List<List<T>> pack(List<T> items, int maxSize) {
+        Preconditions.checkArgument(maxSize > 0);
+        final List<T> list = new ArrayList<T>(items);
+        Collections.sort(list, INCREASING_X_CENTRE);
+        final int numGroups = (list.size() + maxSize - 1) / maxSize;
+        final int numSlices = (int) Math.ceil(Math.sqrt(numGroups));
+        final List<List<T>> groups = new ArrayList<List<T>>(numGroups);
+        for (List<T> slice : Util.partition(list, numSlices * maxSize)) {
+            Collections.sort(slice, INCREASING_Y_CENTRE);
+            groups.addAll(Util.partition(slice, maxSize));
+        }
+        return groups;
+    }
+
+    static final Comparator<HasGeometry> INCREASING_X_CENTRE = new Comparator<HasGeometry>() {
+
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            Rectangle r1 = g1.geometry().mbr();
+            Rectangle r2 = g2.geometry().mbr();
+            return Float.compare(r1.x1() + r1.x2(), r2.x1() + r2.x2());
+        }
+    };
+
+    private static final Comparator<HasGeometry> INCREASING_Y_CENTRE = new Comparator<HasGeometry>() {
+
+        @Override
+        public int compare(HasGeometry g1, HasGeometry g2) {
+            Rectangle r1 = g1.geometry().mbr();
+            Rectangle r2 = g2.geometry().mbr();
+            return Float.compare(r1.y1() + r1.y2(), r2.y1() + r2.y2());
+        }
+    };
+
+}
@@ -0,0 +1,535 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import rx.Observable;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable R-tree of points that is bulk loaded (using STR packing) and
+ * stores the coordinates of its entries in primitive arrays. Leaves hold an x
+ * array, a y array and a values array so there is no {@link Entry},
+ * {@link Point} or {@link Rectangle} object per entry. Those objects are only
+ * created for search results.
+ *
+ * @param <T>
+ *            the entry value type
+ */
+public final class PointRTree<T> {
+
+    /**
+     * Benchmarks of bulk loaded trees of the Greek earthquake data showed this
+     * to be a good choice.
+     */
+    public static final int MAX_CHILDREN_DEFAULT = 10;
+
+    // null if empty
+    private final PointNode root;
+    private final int size;
+
+    private PointRTree(PointNode root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * Returns a tree containing the given entries with at most
+     * {@link #MAX_CHILDREN_DEFAULT} children per node.
+     *
+     * @param entries
+     *            entries to load
+     * @param <T>
+     *            the entry value type
+     * @return a point R-tree
+     */
+    public static <T> PointRTree<T> create(List<Entry<T, Point>> entries) {
+        return create(entries, MAX_CHILDREN_DEFAULT);
+    }
+
+    /**
+     * Returns a tree containing the given entries.
+     *
+     * @param entries
+     *            entries to load
+     * @param maxChildren
+     *            max number of children of a node
+     * @param <T>
+     *            the entry value type
+     * @return a point R-tree
+     */
+    public static <T> PointRTree<T> create(List<Entry<T, Point>> entries, int maxChildren) {
+        final int n = entries.size();
+        final float[] xs = new float[n];
+        final float[] ys = new float[n];
+        final Object[] values = new Object[n];
+        for (int i = 0; i < n; i++) {
+            Entry<T, Point> entry = entries.get(i);
+            xs[i] = entry.geometry().x();
+            ys[i] = entry.geometry().y();
+            values[i] = entry.value();
+        }
+        return create(values, xs, ys, maxChildren);
+    }
+
+    /**
+     * Returns a tree containing an entry for each value located at the
+     * corresponding position in <code>xs</code> and <code>ys</code>. No
+     * objects are created per entry.
+     *
+     * @param values
+     *            entry values
+     * @param xs
+     *            x coordinate of each value
+     * @param ys
+     *            y coordinate of each value
+     * @param maxChildren
+     *            max number of children of a node
+     * @param <T>
+     *            the entry value type
+     * @return a point R-tree
+     */
+    public static <T> PointRTree<T> create(List<T> values, float[] xs, float[] ys,
+            int maxChildren) {
+        return create(values.toArray(), xs, ys, maxChildren);
+    }
+
+    private static <T> PointRTree<T> create(Object[] values, float[] xs, float[] ys,
+            int maxChildren) {
+        Preconditions.checkArgument(maxChildren >= 2, "maxChildren must be at least 2");
+        Preconditions.checkArgument(values.length == xs.length && xs.length == ys.length,
+                "values, xs and ys must be the same length");
+        if (values.length == 0)
+            return new PointRTree<T>(null, 0);
+        final int[][] groups = IndexPacker.pack(xs, ys, maxChildren);
+        PointNode[] nodes = new PointNode[groups.length];
+        for (int g = 0; g < groups.length; g++)
+            nodes[g] = new PointLeaf(groups[g], values, xs, ys);
+        while (nodes.length > 1) {
+            final float[] cx = new float[nodes.length];
+            final float[] cy = new float[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                cx[i] = (nodes[i].x1 + nodes[i].x2) / 2;
+                cy[i] = (nodes[i].y1 + nodes[i].y2) / 2;
+            }
+            final int[][] parentGroups = IndexPacker.pack(cx, cy, maxChildren);
+            final PointNode[] parents = new PointNode[parentGroups.length];
+            for (int g = 0; g < parentGroups.length; g++) {
+                final PointNode[] children = new PointNode[parentGroups[g].length];
+                for (int i = 0; i < children.length; i++)
+                    children[i] = nodes[parentGroups[g][i]];
+                parents[g] = new PointNonLeaf(children);
+            }
+            nodes = parents;
+        }
+        return new PointRTree<T>(nodes[0], values.length);
+    }
+
+    /**
+     * Returns the number of entries in the tree.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if and only if the tree has no entries.
+     *
+     * @return true if the tree is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the entries whose point intersects the given rectangle.
+     *
+     * @param r
+     *            rectangle to search
+     * @return matching entries
+     */
+    public Observable<Entry<T, Point>> search(Rectangle r) {
+        return search(new RTree.IntersectsCondition(r));
+    }
+
+    /**
+     * Returns the entries strictly less than maxDistance from the given point.
+     *
+     * @param p
+     *            point to measure distance from
+     * @param maxDistance
+     *            entries returned must be within this distance from point p
+     * @return matching entries
+     */
+    public Observable<Entry<T, Point>> search(Point p, double maxDistance) {
+        return search(new RTree.WithinDistanceCondition(p.mbr(), maxDistance));
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point where the
+     * entries are strictly less than a given maximum distance from the point.
+     *
+     * @param p
+     *            point
+     * @param maxDistance
+     *            max distance of returned entries from the point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, Point>> nearest(final Point p, final double maxDistance,
+            final int maxCount) {
+        if (root == null)
+            return Observable.empty();
+        else
+            // best-first search as for RTree.nearest
+            return Observable.from(new Iterable<Entry<T, Point>>() {
+                @Override
+                public Iterator<Entry<T, Point>> iterator() {
+                    return new NearestIterator<T>(root, p.mbr(), maxDistance, maxCount);
+                }
+            });
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point no matter
+     * how far away they are.
+     *
+     * @param p
+     *            point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, Point>> nearest(Point p, int maxCount) {
+        return nearest(p, Double.POSITIVE_INFINITY, maxCount);
+    }
+
+    /**
+     * Returns all entries in the tree.
+     *
+     * @return all entries
+     */
+    public Observable<Entry<T, Point>> entries() {
+        return search(ALWAYS_TRUE);
+    }
+
+    private Observable<Entry<T, Point>> search(final BoundsCondition condition) {
+        if (root == null)
+            return Observable.empty();
+        else
+            // Observable.from supports backpressure and the search proceeds
+            // only as far as has been requested
+            return Observable.from(new Iterable<Entry<T, Point>>() {
+                @Override
+                public Iterator<Entry<T, Point>> iterator() {
+                    return new SearchIterator<T>(root, condition);
+                }
+            });
+    }
+
+    private static final BoundsCondition ALWAYS_TRUE = new BoundsCondition() {
+        @Override
+        public boolean test(float x1, float y1, float x2, float y2) {
+            return true;
+        }
+    };
+
+    private abstract static class PointNode {
+        final float x1, y1, x2, y2;
+
+        PointNode(float x1, float y1, float x2, float y2) {
+            this.x1 = x1;
+            this.y1 = y1;
+            this.x2 = x2;
+            this.y2 = y2;
+        }
+    }
+
+    private static final class PointLeaf extends PointNode {
+        final float[] xs;
+        final float[] ys;
+        final Object[] values;
+
+        private PointLeaf(float[] xs, float[] ys, Object[] values) {
+            super(min(xs), min(ys), max(xs), max(ys));
+            this.xs = xs;
+            this.ys = ys;
+            this.values = values;
+        }
+
+        PointLeaf(int[] indexes, Object[] values, float[] xs, float[] ys) {
+            this(select(xs, indexes), select(ys, indexes), select(values, indexes));
+        }
+
+        private static float[] select(float[] a, int[] indexes) {
+            final float[] b = new float[indexes.length];
+            for (int i = 0; i < indexes.length; i++)
+                b[i] = a[indexes[i]];
+            return b;
+        }
+
+        private static Object[] select(Object[] a, int[] indexes) {
+            final Object[] b = new Object[indexes.length];
+            for (int i = 0; i < indexes.length; i++)
+                b[i] = a[indexes[i]];
+            return b;
+        }
+
+        private static float min(float[] a) {
+            float x = a[0];
+            for (int i = 1; i < a.length; i++)
+                x = Math.min(x, a[i]);
+            return x;
+        }
+
+        private static float max(float[] a) {
+            float x = a[0];
+            for (int i = 1; i < a.length; i++)
+                x = Math.max(x, a[i]);
+            return x;
+        }
+    }
+
+    private static final class PointNonLeaf extends PointNode {
+        final PointNode[] children;
+
+        PointNonLeaf(PointNode[] children) {
+            super(x1(children), y1(children), x2(children), y2(children));
+            this.children = children;
+        }
+
+        private static float x1(PointNode[] nodes) {
+            float x = nodes[0].x1;
+            for (PointNode node : nodes)
+                x = Math.min(x, node.x1);
+            return x;
+        }
+
+        private static float y1(PointNode[] nodes) {
+            float y = nodes[0].y1;
+            for (PointNode node : nodes)
+                y = Math.min(y, node.y1);
+            return y;
+        }
+
+        private static float x2(PointNode[] nodes) {
+            float x = nodes[0].x2;
+            for (PointNode node : nodes)
+                x = Math.max(x, node.x2);
+            return x;
+        }
+
+        private static float y2(PointNode[] nodes) {
+            float y = nodes[0].y2;
+            for (PointNode node : nodes)
+                y = Math.max(y, node.y2);
+            return y;
+        }
+    }
+
+    /**
+     * Depth-first search of the tree that emits entries as they are found.
+     * Not thread safe.
+     */
+    private static final class SearchIterator<T> implements Iterator<Entry<T, Point>> {
+
+        private final BoundsCondition condition;
+        // stack of nodes being visited and the position reached in each
+        private PointNode[] nodes = new PointNode[8];
+        private int[] positions = new int[8];
+        private int depth;
+        private Entry<T, Point> next;
+
+        SearchIterator(PointNode root, BoundsCondition condition) {
+            this.condition = condition;
+            if (condition.test(root.x1, root.y1, root.x2, root.y2))
+                push(root);
+            next = computeNext();
+        }
+
+        private void push(PointNode node) {
+            if (depth == nodes.length) {
+                PointNode[] nodes2 = new PointNode[depth * 2];
+                System.arraycopy(nodes, 0, nodes2, 0, depth);
+                nodes = nodes2;
+                int[] positions2 = new int[depth * 2];
+                System.arraycopy(positions, 0, positions2, 0, depth);
+                positions = positions2;
+            }
+            nodes[depth] = node;
+            positions[depth] = 0;
+            depth++;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Entry<T, Point> computeNext() {
+            while (depth > 0) {
+                final PointNode node = nodes[depth - 1];
+                int i = positions[depth - 1];
+                if (node instanceof PointLeaf) {
+                    final PointLeaf leaf = (PointLeaf) node;
+                    while (i < leaf.xs.length) {
+                        final float x = leaf.xs[i];
+                        final float y = leaf.ys[i];
+                        if (condition.test(x, y, x, y)) {
+                            positions[depth - 1] = i + 1;
+                            return Entry.entry((T) leaf.values[i], Geometries.point(x, y));
+                        }
+                        i++;
+                    }
+                    nodes[--depth] = null;
+                } else {
+                    final PointNode[] children = ((PointNonLeaf) node).children;
+                    if (i == children.length)
+                        nodes[--depth] = null;
+                    else {
+                        positions[depth - 1] = i + 1;
+                        final PointNode child = children[i];
+                        if (condition.test(child.x1, child.y1, child.x2, child.y2))
+                            push(child);
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Entry<T, Point> next() {
+            if (next == null)
+                throw new NoSuchElementException();
+            final Entry<T, Point> result = next;
+            next = computeNext();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Best-first nearest neighbour search with the nodes and entries waiting
+     * in one priority queue ordered by distance, as {@link NearestIterator}
+     * does for an {@link RTree}. An entry is only created when it is returned.
+     * Not thread safe.
+     */
+    private static final class NearestIterator<T> implements Iterator<Entry<T, Point>> {
+
+        private final Rectangle r;
+        private final double maxDistance;
+        private final PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(16,
+                CANDIDATE_COMPARATOR);
+        private int remaining;
+        private Entry<T, Point> next;
+
+        NearestIterator(PointNode root, Rectangle r, double maxDistance, int maxCount) {
+            this.r = r;
+            this.maxDistance = maxDistance;
+            this.remaining = maxCount;
+            offer(distance(root.x1, root.y1, root.x2, root.y2), root, -1);
+        }
+
+        private double distance(float x1, float y1, float x2, float y2) {
+            // same arithmetic as Rectangle.distance
+            final double dx = Math.max(0, Math.max(x1, r.x1()) - Math.min(x2, r.x2()));
+            final double dy = Math.max(0, Math.max(y1, r.y1()) - Math.min(y2, r.y2()));
+            return Math.sqrt(dx * dx + dy * dy);
+        }
+
+        private void offer(double distance, PointNode node, int index) {
+            if (distance < maxDistance)
+                queue.offer(new Candidate(distance, node, index));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Entry<T, Point> computeNext() {
+            if (remaining <= 0)
+                return null;
+            Candidate c;
+            while ((c = queue.poll()) != null) {
+                if (c.index >= 0) {
+                    remaining--;
+                    if (remaining == 0)
+                        queue.clear();
+                    final PointLeaf leaf = (PointLeaf) c.node;
+                    return Entry.entry((T) leaf.values[c.index],
+                            Geometries.point(leaf.xs[c.index], leaf.ys[c.index]));
+                } else if (c.node instanceof PointLeaf) {
+                    final PointLeaf leaf = (PointLeaf) c.node;
+                    for (int i = 0; i < leaf.xs.length; i++)
+                        offer(distance(leaf.xs[i], leaf.ys[i], leaf.xs[i], leaf.ys[i]), leaf, i);
+                } else {
+                    for (PointNode child : ((PointNonLeaf) c.node).children)
+                        offer(distance(child.x1, child.y1, child.x2, child.y2), child, -1);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null)
+                next = computeNext();
+            return next != null;
+        }
+
+        @Override
+        public Entry<T, Point> next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            final Entry<T, Point> result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Candidate {
+        final double distance;
+        final PointNode node;
+        // index of the entry in node (a leaf) or -1 if the candidate is the
+        // node itself
+        final int index;
+
+        Candidate(double distance, PointNode node, int index) {
+            this.distance = distance;
+            this.node = node;
+            this.index = index;
+        }
+    }
+
+    private static final Comparator<Candidate> CANDIDATE_COMPARATOR = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate a, Candidate b) {
+            int result = Double.compare(a.distance, b.distance);
+            if (result != 0)
+                return result;
+            else if ((a.index >= 0) == (b.index >= 0))
+                return 0;
+            else
+                // entries before nodes at the same distance
+                return a.index >= 0 ? -1 : 1;
+        }
+    };
+
+}
@@ -4,18 +4,23 @@ import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
 import static com.google.common.base.Optional.absent;
 import static com.google.common.base.Optional.of;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import rx.Observable;
+import rx.Scheduler;
+import rx.functions.Func0;
 import rx.functions.Func1;
 import rx.functions.Func2;
 
+import com.github.davidmoten.rtree.geometry.Circle;
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
-import com.github.davidmoten.rx.operators.OperatorBoundedPriorityQueue;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
 /**
@@ -28,6 +33,25 @@ import com.google.common.collect.Lists;
  */
 public final class RTree<T, S extends Geometry> {
 
+    /**
+     * Receives each matching entry of a synchronous search.
+     * 
+     * @param <T>
+     *            the entry value type
+     * @param <S>
+     *            the entry geometry type
+     */
+    public interface Visitor<T, S extends Geometry> {
+
+        /**
+         * Called for each matching entry.
+         * 
+         * @param entry
+         *            the matching entry
+         */
+        void visit(Entry<T, S> entry);
+    }
+
     private final Optional<? extends Node<T, S>> root;
     private final Context context;
 
@@ -43,6 +67,14 @@ public final class RTree<T, S extends Geometry> {
      */
     public static final int MAX_CHILDREN_DEFAULT_STAR = 4;
 
+    /**
+     * Number of entries added to the tree at a time by
+     * {@link #add(Iterable)}. Larger batches share more of the path copying
+     * but the cost of splitting an overfull node grows faster than linearly
+     * with the number of entries it receives.
+     */
+    private static final int ADD_BATCH_SIZE = 64;
+
     /**
      * Current size in Entries of the RTree.
      */
@@ -56,7 +88,7 @@ public final class RTree<T, S extends Geometry> {
      * @param context
      *            options for the R-tree
      */
-    private RTree(Optional<? extends Node<T, S>> root, int size, Context context) {
+    RTree(Optional<? extends Node<T, S>> root, int size, Context context) {
         this.root = root;
         this.size = size;
         this.context = context;
@@ -98,6 +130,23 @@ public final class RTree<T, S extends Geometry> {
         return new Builder().create();
     }
 
+    /**
+     * Returns a new {@link RTree} containing the given entries, bulk loaded
+     * using the default {@link Builder} settings. See
+     * {@link Builder#create(List)}.
+     * 
+     * @param <T>
+     *            the value type of the entries in the tree
+     * @param <S>
+     *            the geometry type of the entries in the tree
+     * @param entries
+     *            entries to load into the tree
+     * @return a new RTree instance containing the entries
+     */
+    public static <T, S extends Geometry> RTree<T, S> create(List<Entry<T, S>> entries) {
+        return new Builder().create(entries);
+    }
+
     /**
      * The tree is scanned for depth and the depth returned. This involves
      * recursing down to the leaf level of the tree to get the current depth.
@@ -181,6 +230,62 @@ public final class RTree<T, S extends Geometry> {
         return new Builder().star();
     }
 
+    /**
+     * Sets the {@link Packer} used to group entries and nodes when bulk
+     * loading with {@link Builder#create(List)}.
+     * 
+     * @param packer
+     *            the packing algorithm to use
+     * @return builder
+     */
+    public static Builder packer(Packer packer) {
+        return new Builder().packer(packer);
+    }
+
+    /**
+     * Sets the number of threads used when bulk loading with
+     * {@link Builder#create(List)}.
+     * 
+     * @param threads
+     *            number of threads to bulk load with
+     * @return builder
+     */
+    public static Builder bulkLoadThreads(int threads) {
+        return new Builder().bulkLoadThreads(threads);
+    }
+
+    /**
+     * Makes non-leaf nodes store quantized copies of the mbrs of their
+     * children (see {@link Builder#quantizeChildMbrs()}).
+     *
+     * @return builder
+     */
+    public static Builder quantizeChildMbrs() {
+        return new Builder().quantizeChildMbrs();
+    }
+
+    /**
+     * Makes leaf nodes store the mbrs of their entries in one float array (see
+     * {@link Builder#leafEntryMbrs()}).
+     *
+     * @return builder
+     */
+    public static Builder leafEntryMbrs() {
+        return new Builder().leafEntryMbrs();
+    }
+
+    /**
+     * Sets the {@link Aggregation} of entry values cached by every node. See
+     * {@link Builder#aggregation(Aggregation)}.
+     * 
+     * @param aggregation
+     *            aggregation of entry values
+     * @return builder
+     */
+    public static Builder aggregation(Aggregation<?, ?> aggregation) {
+        return new Builder().aggregation(aggregation);
+    }
+
     /**
      * RTree Builder.
      */
@@ -197,7 +302,12 @@ public final class RTree<T, S extends Geometry> {
         private Optional<Integer> minChildren = absent();
         private Splitter splitter = new SplitterQuadratic();
         private Selector selector = new SelectorMinimalAreaIncrease();
+        private Packer packer = new PackerStr();
+        private int bulkLoadThreads = 1;
         private boolean star = false;
+        private boolean quantizeChildMbrs = false;
+        private boolean leafEntryMbrs = false;
+        private Aggregation<?, ?> aggregation = null;
 
         private Builder() {
         }
@@ -267,6 +377,95 @@ public final class RTree<T, S extends Geometry> {
             return this;
         }
 
+        /**
+         * Sets the {@link Packer} used to group entries and nodes when bulk
+         * loading with {@link #create(List)}. Defaults to {@link PackerStr}.
+         * 
+         * @param packer
+         *            the packing algorithm to use
+         * @return builder
+         */
+        public Builder packer(Packer packer) {
+            this.packer = packer;
+            return this;
+        }
+
+        /**
+         * Sets the number of threads used to sort and pack entries when bulk
+         * loading with {@link #create(List)}. Defaults to 1. Using more than
+         * one thread only pays off for large numbers of entries (say more
+         * than 100,000). With {@link PackerHilbert} the tree is the same as
+         * one loaded with a single thread. With other packers the entries are
+         * sorted by x and cut into one vertical slab per thread before each
+         * slab is packed, so the tree may differ from (but is as valid as) one
+         * loaded with a single thread.
+         * 
+         * @param threads
+         *            number of threads to bulk load with
+         * @return builder
+         */
+        public Builder bulkLoadThreads(int threads) {
+            Preconditions.checkArgument(threads >= 1);
+            this.bulkLoadThreads = threads;
+            return this;
+        }
+
+        /**
+         * Makes each non-leaf node also store the mbrs of its children
+         * quantized to 16 bit offsets relative to its own mbr (8 bytes per
+         * child in one array). The quantized mbrs are rounded outwards so
+         * they contain the exact mbrs. Searches by rectangle or distance test
+         * the children of a node using the quantized mbrs so that children
+         * that don't match are never read. Exact geometry is still checked at
+         * the leaves. This costs extra memory and time when adding to the
+         * tree and pays off for search-heavy use of large trees.
+         * 
+         * @return builder
+         */
+        public Builder quantizeChildMbrs() {
+            this.quantizeChildMbrs = true;
+            return this;
+        }
+
+        /**
+         * Makes each leaf node also store the x1, y1, x2, y2 of the mbr of
+         * each of its entries in one float array (16 bytes per entry) so that
+         * searches by rectangle, distance or circle reject entries without
+         * dereferencing them. The array is rebuilt whenever a leaf is copied
+         * so adds and deletes cost more. On data that fits in cache the
+         * measured search speed-up is small and not consistent across
+         * splitters (for example faster for quadratic splitting with
+         * maxChildren 10 but slower for R*-tree splitting with maxChildren
+         * 10 and 32), so measure before enabling it.
+         * 
+         * @return builder
+         */
+        public Builder leafEntryMbrs() {
+            this.leafEntryMbrs = true;
+            return this;
+        }
+
+        /**
+         * Makes every node cache the aggregate of the values of the entries
+         * below it so that {@link RTree#aggregate(Rectangle, Aggregation)}
+         * uses the cached aggregate of each node that lies within the query
+         * rectangle. The aggregates are maintained as entries are added and
+         * deleted: each node rebuilt on the path of a change recomputes its
+         * aggregate from scratch, calling <code>of</code> for every entry of
+         * a leaf or <code>combine</code> over the aggregates of every child
+         * of a non-leaf (up to maxChildren calls per node, which may box for
+         * {@link Aggregations}). The value type of the tree must be
+         * acceptable to the aggregation.
+         * 
+         * @param aggregation
+         *            aggregation of entry values, see {@link Aggregations}
+         * @return builder
+         */
+        public Builder aggregation(Aggregation<?, ?> aggregation) {
+            this.aggregation = Preconditions.checkNotNull(aggregation);
+            return this;
+        }
+
         /**
          * Builds the {@link RTree}.
          * 
@@ -277,6 +476,35 @@ public final class RTree<T, S extends Geometry> {
          * @return RTree
          */
         public <T, S extends Geometry> RTree<T, S> create() {
+            return new RTree<T, S>(buildContext());
+        }
+
+        /**
+         * Builds the {@link RTree} containing the given entries. Rather than
+         * adding the entries one at a time the tree is bulk loaded bottom-up
+         * using the {@link Packer} (Sort-Tile-Recursive by default) so that
+         * nodes are (almost) full and overlap between nodes is low. This is
+         * much faster than adding the entries individually.
+         * 
+         * @param <T>
+         *            value type
+         * @param <S>
+         *            geometry type
+         * @param entries
+         *            entries to load into the tree
+         * @return RTree containing the entries
+         */
+        public <T, S extends Geometry> RTree<T, S> create(List<Entry<T, S>> entries) {
+            Context context = buildContext();
+            if (entries.isEmpty())
+                return new RTree<T, S>(context);
+            else
+                return new RTree<T, S>(BulkLoader.load(entries, context, packer,
+                        bulkLoadThreads),
+                        entries.size(), context);
+        }
+
+        private Context buildContext() {
             if (!maxChildren.isPresent())
                 if (star)
                     maxChildren = of(MAX_CHILDREN_DEFAULT_STAR);
@@ -284,8 +512,8 @@ public final class RTree<T, S extends Geometry> {
                     maxChildren = of(MAX_CHILDREN_DEFAULT_GUTTMAN);
             if (!minChildren.isPresent())
                 minChildren = of((int) Math.round(maxChildren.get() * DEFAULT_FILLING_FACTOR));
-            return new RTree<T, S>(new Context(minChildren.get(), maxChildren.get(), selector,
-                    splitter));
+            return new Context(minChildren.get(), maxChildren.get(), selector, splitter,
+                    quantizeChildMbrs, leafEntryMbrs, aggregation);
         }
 
     }
@@ -314,6 +542,43 @@ public final class RTree<T, S extends Geometry> {
                     context);
     }
 
+    /**
+     * Returns a read-only copy of this tree whose nodes are stored off the
+     * Java heap. Useful for reducing garbage collection work for large trees
+     * that are no longer modified.
+     * 
+     * @return an off-heap copy of this tree
+     */
+    public OffHeapRTree<T, S> offHeap() {
+        return OffHeapRTree.create(this);
+    }
+
+    /**
+     * Returns a read-only copy of this tree whose nodes are laid out in
+     * contiguous primitive arrays. The copy has a smaller heap footprint
+     * than this tree; searching it is about as fast as searching this tree
+     * when the tree fits in cache. Useful for trees that are built once and
+     * then only queried.
+     * 
+     * @return a flat read-only copy of this tree
+     */
+    public FlatRTree<T, S> freeze() {
+        return FlatRTree.create(this);
+    }
+
+    /**
+     * Returns a mutable {@link TransientRTree} with the entries of this tree.
+     * Adding to the transient modifies its nodes in place (copying nodes
+     * shared with this tree the first time they are touched) which is cheaper
+     * than adding to an immutable tree when many entries are to be added.
+     * This tree is not affected.
+     * 
+     * @return a transient tree to be used by one thread at a time
+     */
+    public TransientRTree<T, S> asTransient() {
+        return new TransientRTree<T, S>(root, size, context);
+    }
+
     /**
      * Returns an immutable copy of the RTree with the addition of an entry
      * comprised of the given value and Geometry.
@@ -338,11 +603,47 @@ public final class RTree<T, S extends Geometry> {
      */
     public RTree<T, S> add(Iterable<Entry<T, S>> entries) {
         RTree<T, S> tree = this;
-        for (Entry<T, S> entry : entries)
-            tree = tree.add(entry);
+        List<Entry<T, S>> batch = new ArrayList<Entry<T, S>>(ADD_BATCH_SIZE);
+        for (Entry<T, S> entry : entries) {
+            batch.add(entry);
+            if (batch.size() == ADD_BATCH_SIZE) {
+                tree = tree.addBatch(batch);
+                batch = new ArrayList<Entry<T, S>>(ADD_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty())
+            tree = tree.addBatch(batch);
         return tree;
     }
 
+    /**
+     * Returns a tree with the given entries added where each node of this tree
+     * that the entries are added beneath is rebuilt only once. Nodes that
+     * receive no entries are shared with this tree.
+     * 
+     * @param entries
+     *            entries to add, must not be empty
+     * @return R-tree with entries added
+     */
+    private RTree<T, S> addBatch(List<Entry<T, S>> entries) {
+        List<Node<T, S>> nodes;
+        if (root.isPresent())
+            nodes = root.get().addAll(entries);
+        else {
+            nodes = new ArrayList<Node<T, S>>();
+            for (List<Entry<T, S>> group : Util.split(entries, context))
+                nodes.add(new Leaf<T, S>(group, context));
+        }
+        // grow the tree upwards until there is a single root
+        while (nodes.size() > 1) {
+            final List<Node<T, S>> parents = new ArrayList<Node<T, S>>();
+            for (List<Node<T, S>> group : Util.split(nodes, context))
+                parents.add(new NonLeaf<T, S>(group, context));
+            nodes = parents;
+        }
+        return new RTree<T, S>(nodes.get(0), size + entries.size(), context);
+    }
+
     /**
      * Returns the Observable sequence of trees created by progressively adding
      * entries.
@@ -361,6 +662,30 @@ public final class RTree<T, S extends Geometry> {
         });
     }
 
+    /**
+     * Returns the Observable sequence of trees created by progressively adding
+     * entries in batches. One tree is emitted per batch (after the initial
+     * tree) rather than one per entry which avoids building intermediate trees
+     * that would be discarded immediately.
+     * 
+     * @param entries
+     *            the entries to add
+     * @param batchSize
+     *            maximum number of entries added to produce each emitted tree
+     * @return a sequence of trees
+     */
+    public Observable<RTree<T, S>> add(Observable<Entry<T, S>> entries, int batchSize) {
+        Preconditions.checkArgument(batchSize >= 1, "batchSize must be at least 1");
+        return entries.buffer(batchSize).scan(this,
+                new Func2<RTree<T, S>, List<Entry<T, S>>, RTree<T, S>>() {
+
+                    @Override
+                    public RTree<T, S> call(RTree<T, S> tree, List<Entry<T, S>> batch) {
+                        return tree.add(batch);
+                    }
+                });
+    }
+
     /**
      * Returns the Observable sequence of trees created by progressively
      * deleting entries.
@@ -529,12 +854,86 @@ public final class RTree<T, S extends Geometry> {
      * @return whether the geometry and the rectangle intersect
      */
     public static Func1<Geometry, Boolean> intersects(final Rectangle r) {
-        return new Func1<Geometry, Boolean>() {
-            @Override
-            public Boolean call(Geometry g) {
-                return g.intersects(r);
-            }
-        };
+        return new IntersectsCondition(r);
+    }
+
+    static final class IntersectsCondition implements Func1<Geometry, Boolean>,
+            BoundsCondition {
+
+        private final Rectangle r;
+
+        IntersectsCondition(Rectangle r) {
+            this.r = r;
+        }
+
+        @Override
+        public Boolean call(Geometry g) {
+            return g.intersects(r);
+        }
+
+        @Override
+        public boolean test(float x1, float y1, float x2, float y2) {
+            // same arithmetic as Rectangle.intersects
+            return Math.min(x2, r.x2()) >= Math.max(x1, r.x1())
+                    && Math.min(y2, r.y2()) >= Math.max(y1, r.y1());
+        }
+    }
+
+    /**
+     * Satisfied by geometries strictly less than maxDistance from a rectangle.
+     */
+    static final class WithinDistanceCondition implements Func1<Geometry, Boolean>,
+            BoundsCondition {
+
+        private final Rectangle r;
+        private final double maxDistance;
+
+        WithinDistanceCondition(Rectangle r, double maxDistance) {
+            this.r = r;
+            this.maxDistance = maxDistance;
+        }
+
+        @Override
+        public Boolean call(Geometry g) {
+            return g.distance(r) < maxDistance;
+        }
+
+        @Override
+        public boolean test(float x1, float y1, float x2, float y2) {
+            // same arithmetic as Rectangle.distance
+            final double dx = Math.max(0, Math.max(x1, r.x1()) - Math.min(x2, r.x2()));
+            final double dy = Math.max(0, Math.max(y1, r.y1()) - Math.min(y2, r.y2()));
+            return Math.sqrt(dx * dx + dy * dy) < maxDistance;
+        }
+    }
+
+    /**
+     * Satisfied by geometries whose mbr intersects a circle.
+     */
+    static final class CircleCondition implements Func1<Geometry, Boolean>, BoundsCondition {
+
+        private final Circle circle;
+        private final double radiusSquared;
+
+        CircleCondition(Circle circle) {
+            this.circle = circle;
+            this.radiusSquared = (double) circle.radius() * circle.radius();
+        }
+
+        @Override
+        public Boolean call(Geometry g) {
+            return circle.intersects(g.mbr());
+        }
+
+        @Override
+        public boolean test(float x1, float y1, float x2, float y2) {
+            // same arithmetic as Circle.intersects(Rectangle)
+            final double dx = Math.max(0,
+                    Math.max((double) x1 - circle.x(), (double) circle.x() - x2));
+            final double dy = Math.max(0,
+                    Math.max((double) y1 - circle.y(), (double) circle.y() - y2));
+            return dx * dx + dy * dy <= radiusSquared;
+        }
     }
 
     /**
@@ -561,6 +960,178 @@ public final class RTree<T, S extends Geometry> {
         return search(intersects(r));
     }
 
+    /**
+     * Synchronously passes each {@link Entry} whose geometry intersects the
+     * given rectangle to the visitor before returning. Unlike
+     * {@link #search(Rectangle)} nothing is allocated during the search.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @param visitor
+     *            receives the matching entries
+     * @return the number of matching entries
+     */
+    public int search(Rectangle r, Visitor<T, S> visitor) {
+        if (root.isPresent() && root.get().geometry().mbr().intersects(r))
+            return root.get().search(r, visitor);
+        else
+            return 0;
+    }
+
+    /**
+     * Returns the number of entries whose geometry intersects the given
+     * rectangle. This is the same as <code>search(r).count()</code> but the
+     * entry count of each subtree whose mbr lies within r is used without
+     * visiting its entries so only the nodes on the boundary of r are
+     * searched.
+     *
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @return the number of matching entries
+     */
+    public int count(Rectangle r) {
+        if (root.isPresent() && root.get().geometry().mbr().intersects(r))
+            return root.get().count(r);
+        else
+            return 0;
+    }
+
+    /**
+     * Returns the aggregate of the values of the entries whose geometry
+     * intersects the given rectangle. The tree must have been built with the
+     * same aggregation (see {@link Builder#aggregation(Aggregation)}). As for
+     * {@link #count(Rectangle)} the cached aggregate of each subtree whose mbr
+     * lies within r is used without visiting its entries.
+     *
+     * @param <A>
+     *            aggregate type
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @param aggregation
+     *            the aggregation the tree was built with
+     * @return the aggregate of the matching entry values
+     * @throws IllegalArgumentException
+     *             if the tree was not built with the aggregation
+     */
+    @SuppressWarnings("unchecked")
+    public <A> A aggregate(Rectangle r, Aggregation<? super T, A> aggregation) {
+        Preconditions.checkArgument(aggregation == context.aggregation(),
+                "tree was not built with this aggregation");
+        if (root.isPresent() && root.get().geometry().mbr().intersects(r))
+            return (A) root.get().aggregate(r);
+        else
+            return aggregation.empty();
+    }
+
+    /**
+     * Returns the cursor positioned before the first {@link Entry} whose
+     * geometry intersects the given rectangle. The cursor is an
+     * {@link java.util.Iterator} over the matching entries that finds each
+     * entry as it is requested. A cursor may be reused for any number of
+     * searches (of any tree with the same type) in which case its traversal
+     * stack is reused and the search allocates nothing.
+     * 
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @param cursor
+     *            the cursor to reposition
+     * @return the cursor
+     */
+    public SearchCursor<T, S> search(Rectangle r, SearchCursor<T, S> cursor) {
+        if (root.isPresent())
+            cursor.reset(root.get(), r);
+        else
+            cursor.reset(null, r);
+        return cursor;
+    }
+
+    /**
+     * Returns the entries whose geometry intersects any of the given
+     * rectangles, each tagged with the index in the list of a rectangle it
+     * intersects (an entry that intersects several rectangles is emitted once
+     * for each). The tree is traversed once for the whole batch and a node is
+     * only tested against the rectangles that intersect its parent, so this is
+     * cheaper than a separate search per rectangle when the rectangles are
+     * numerous or clustered. Emissions are in tree order, not grouped by index.
+     *
+     * @param rectangles
+     *            the query rectangles
+     * @return the entries matching each query tagged with the query index
+     */
+    public Observable<IndexedEntry<T, S>> search(List<Rectangle> rectangles) {
+        final Rectangle[] queries = rectangles.toArray(new Rectangle[rectangles.size()]);
+        return Observable.from(new Iterable<IndexedEntry<T, S>>() {
+            @Override
+            public Iterator<IndexedEntry<T, S>> iterator() {
+                return new BatchSearchIterator<T, S>(root, queries);
+            }
+        });
+    }
+
+    /**
+     * Returns the entries whose geometry intersects the given rectangle,
+     * searching subtrees in parallel on the given scheduler. On subscription
+     * the tree is descended level by level (never into the leaves) until at
+     * least <code>parallelThreshold</code> non-leaf nodes intersect the
+     * rectangle. Each of those subtrees is then searched on the scheduler and
+     * the results merged. If fewer nodes intersect the rectangle (a small
+     * query) the search is sequential as for {@link #search(Rectangle)}. The
+     * order of emissions is not deterministic in parallel mode.
+     *
+     * @param r
+     *            rectangle to check intersection with the entry geometry
+     * @param scheduler
+     *            scheduler that subtrees are searched on
+     * @param parallelThreshold
+     *            minimum number of intersecting subtrees for a parallel search
+     * @return entries that intersect with the rectangle r
+     */
+    public Observable<Entry<T, S>> search(final Rectangle r, final Scheduler scheduler,
+            final int parallelThreshold) {
+        Preconditions.checkArgument(parallelThreshold >= 1);
+        return Observable.defer(new Func0<Observable<Entry<T, S>>>() {
+            @Override
+            public Observable<Entry<T, S>> call() {
+                final Func1<Geometry, Boolean> condition = intersects(r);
+                final List<Node<T, S>> subtrees = intersectingSubtrees(r, parallelThreshold);
+                if (subtrees.size() < parallelThreshold)
+                    return search(condition);
+                else
+                    return Observable.from(subtrees).flatMap(
+                            new Func1<Node<T, S>, Observable<Entry<T, S>>>() {
+                                @Override
+                                public Observable<Entry<T, S>> call(Node<T, S> node) {
+                                    return Observable.create(
+                                            new OnSubscribeSearch<T, S>(node, condition))
+                                            .subscribeOn(scheduler);
+                                }
+                            });
+            }
+        });
+    }
+
+    /**
+     * Returns the non-leaf nodes intersecting r from the highest level that
+     * has at least <code>threshold</code> of them or from the lowest non-leaf
+     * level if none does.
+     */
+    private List<Node<T, S>> intersectingSubtrees(Rectangle r, int threshold) {
+        List<Node<T, S>> nodes = new ArrayList<Node<T, S>>();
+        if (root.isPresent() && root.get() instanceof NonLeaf
+                && root.get().geometry().mbr().intersects(r))
+            nodes.add(root.get());
+        while (nodes.size() > 0 && nodes.size() < threshold
+                && ((NonLeaf<T, S>) nodes.get(0)).children().get(0) instanceof NonLeaf) {
+            List<Node<T, S>> next = new ArrayList<Node<T, S>>();
+            for (Node<T, S> node : nodes)
+                for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                    if (child.geometry().mbr().intersects(r))
+                        next.add(child);
+            nodes = next;
+        }
+        return nodes;
+    }
+
     /**
      * Returns an {@link Observable} sequence of all {@link Entry}s in the
      * R-tree whose minimum bounding rectangle intersects with the given point.
@@ -573,6 +1144,21 @@ public final class RTree<T, S extends Geometry> {
         return search(p.mbr());
     }
 
+    /**
+     * Returns an {@link Observable} sequence of all {@link Entry}s in the
+     * R-tree whose minimum bounding rectangle intersects with the given
+     * circle. Unlike {@link #search(Geometry, Func2)} the circle itself
+     * rather than its mbr is tested against the mbrs of the nodes so subtrees
+     * in the corners of the mbr of the circle are not visited.
+     * 
+     * @param c
+     *            circle to check intersection with the entry mbr
+     * @return entries that intersect with the circle c
+     */
+    public Observable<Entry<T, S>> search(final Circle c) {
+        return search(new CircleCondition(c));
+    }
+
     /**
      * Returns an {@link Observable} sequence of all {@link Entry}s in the
      * R-tree whose minimum bounding rectangles are strictly less than
@@ -585,12 +1171,7 @@ public final class RTree<T, S extends Geometry> {
      * @return the sequence of matching entries
      */
     public Observable<Entry<T, S>> search(final Rectangle r, final double maxDistance) {
-        return search(new Func1<Geometry, Boolean>() {
-            @Override
-            public Boolean call(Geometry g) {
-                return g.distance(r) < maxDistance;
-            }
-        });
+        return search(new WithinDistanceCondition(r, maxDistance));
     }
 
     /**
@@ -634,13 +1215,8 @@ public final class RTree<T, S extends Geometry> {
      */
     public <R extends Geometry> Observable<Entry<T, S>> search(final R g, final double maxDistance,
             final Func2<? super S, ? super R, Double> distance) {
-        return search(new Func1<Geometry, Boolean>() {
-            @Override
-            public Boolean call(Geometry entry) {
-                // just use the mbr initially
-                return entry.distance(g.mbr()) < maxDistance;
-            }
-        })
+        // just use the mbr initially
+        return search(new WithinDistanceCondition(g.mbr(), maxDistance))
         // refine with distance function
         .filter(new Func1<Entry<T, S>, Boolean>() {
             @Override
@@ -678,10 +1254,30 @@ public final class RTree<T, S extends Geometry> {
      *            max number of entries to return
      * @return nearest entries to maxCount, in ascending order of distance
      */
-    public Observable<Entry<T, S>> nearest(final Rectangle r, final double maxDistance, int maxCount) {
-        return search(r, maxDistance).lift(
-                new OperatorBoundedPriorityQueue<Entry<T, S>>(maxCount, Comparators
-                        .<T, S> ascendingDistance(r)));
+    public Observable<Entry<T, S>> nearest(final Rectangle r, final double maxDistance,
+            final int maxCount) {
+        // best-first search that only expands nodes nearer than the next
+        // result, Observable.from supports backpressure
+        return Observable.from(new Iterable<Entry<T, S>>() {
+            @Override
+            public Iterator<Entry<T, S>> iterator() {
+                return new NearestIterator<T, S>(root, r, maxDistance, maxCount);
+            }
+        });
+    }
+
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given rectangle no
+     * matter how far away they are.
+     * 
+     * @param r
+     *            rectangle
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(Rectangle r, int maxCount) {
+        return nearest(r, Double.POSITIVE_INFINITY, maxCount);
     }
 
     /**
@@ -700,6 +1296,259 @@ public final class RTree<T, S extends Geometry> {
         return nearest(p.mbr(), maxDistance, maxCount);
     }
 
+    /**
+     * Returns the nearest k entries (k=maxCount) to the given point no matter
+     * how far away they are.
+     * 
+     * @param p
+     *            point
+     * @param maxCount
+     *            max number of entries to return
+     * @return nearest entries to maxCount, in ascending order of distance
+     */
+    public Observable<Entry<T, S>> nearest(Point p, int maxCount) {
+        return nearest(p.mbr(), maxCount);
+    }
+
+    /**
+     * Returns all entries of the tree in ascending order of distance from the
+     * given rectangle (distance browsing). The search is incremental: a node
+     * is only expanded when it is needed to find the next entry that has
+     * been requested so a subscriber that unsubscribes or stops requesting
+     * after k entries pays for little more than a search for the nearest k.
+     * 
+     * @param r
+     *            rectangle to measure distance from
+     * @return all entries in ascending order of distance from r
+     */
+    public Observable<Entry<T, S>> nearestIncremental(Rectangle r) {
+        return Observable.create(new OnSubscribeNearest<T, S>(root, r));
+    }
+
+    /**
+     * Returns all entries of the tree in ascending order of distance from the
+     * given point. See {@link #nearestIncremental(Rectangle)}.
+     * 
+     * @param p
+     *            point to measure distance from
+     * @return all entries in ascending order of distance from p
+     */
+    public Observable<Entry<T, S>> nearestIncremental(Point p) {
+        return nearestIncremental(p.mbr());
+    }
+
+    /**
+     * Returns the pairs of entries (one from this tree, one from the other)
+     * whose mbrs intersect and whose geometries satisfy the predicate. Both
+     * trees are traversed together so that only pairs of nodes whose mbrs
+     * intersect are expanded, which is much cheaper than searching the other
+     * tree for each entry of this tree. The predicate is only called for pairs
+     * whose mbrs intersect so must imply that they do (for example the
+     * functions in {@link com.github.davidmoten.rtree.geometry.Intersects}).
+     * Pairs are found as they are requested so backpressure is supported.
+     * Pairs of leaves are joined by nested loops, see
+     * {@link #join(RTree, Func2, boolean)}.
+     *
+     * @param <U>
+     *            the value type of the other tree
+     * @param <R>
+     *            the geometry type of the other tree
+     * @param other
+     *            the tree to join with
+     * @param predicate
+     *            tests the geometries of a candidate pair
+     * @return the matching pairs
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> join(RTree<U, R> other,
+            Func2<? super S, ? super R, Boolean> predicate) {
+        return join(other, predicate, false);
+    }
+
+    /**
+     * As for {@link #join(RTree, Func2)} but if <code>planeSweep</code> is true
+     * each pair of leaves is joined by sorting the entries of both leaves by
+     * x1 and sweeping along x rather than by comparing every entry with every
+     * other. The sweep only pays off for large leaves (large maxChildren).
+     *
+     * @param <U>
+     *            the value type of the other tree
+     * @param <R>
+     *            the geometry type of the other tree
+     * @param other
+     *            the tree to join with
+     * @param predicate
+     *            tests the geometries of a candidate pair
+     * @param planeSweep
+     *            whether to join pairs of leaves with a plane sweep
+     * @return the matching pairs
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> join(final RTree<U, R> other,
+            final Func2<? super S, ? super R, Boolean> predicate, final boolean planeSweep) {
+        return Observable.from(new Iterable<EntryPair<T, S, U, R>>() {
+            @Override
+            public Iterator<EntryPair<T, S, U, R>> iterator() {
+                return new JoinIterator<T, S, U, R>(root, other.root, predicate, planeSweep);
+            }
+        });
+    }
+
+    /**
+     * Returns each unordered pair of distinct entries of this tree that are
+     * strictly less than <code>maxDistance</code> apart, where the distance is
+     * from the geometry of one entry to the mbr of the other (exact for points
+     * and rectangles). The tree is traversed against itself so that only
+     * pairs of nodes within the distance of each other are expanded and each
+     * pair is emitted once. Pairs are found as they are requested so
+     * backpressure is supported.
+     *
+     * @param maxDistance
+     *            strict max distance between the entries of a pair
+     * @return the pairs of entries within the distance
+     */
+    public Observable<EntryPair<T, S, T, S>> selfJoin(final double maxDistance) {
+        return Observable.from(new Iterable<EntryPair<T, S, T, S>>() {
+            @Override
+            public Iterator<EntryPair<T, S, T, S>> iterator() {
+                return new SelfJoinIterator<T, S>(root, maxDistance);
+            }
+        });
+    }
+
+    /**
+     * As for {@link #selfJoin(double)} but the work is split into pairs of
+     * subtrees that are joined in parallel on the given scheduler and the
+     * results merged. On subscription the tree is paired with itself and
+     * expanded level by level (never into the leaves) until there are at least
+     * <code>parallelThreshold</code> pairs of subtrees within the distance.
+     * If there are fewer the join is sequential. The order of emissions is not
+     * deterministic in parallel mode.
+     *
+     * @param maxDistance
+     *            strict max distance between the entries of a pair
+     * @param scheduler
+     *            scheduler that pairs of subtrees are joined on
+     * @param parallelThreshold
+     *            minimum number of pairs of subtrees for a parallel join
+     * @return the pairs of entries within the distance
+     */
+    public Observable<EntryPair<T, S, T, S>> selfJoin(final double maxDistance,
+            final Scheduler scheduler, final int parallelThreshold) {
+        Preconditions.checkArgument(parallelThreshold >= 1);
+        return Observable.defer(new Func0<Observable<EntryPair<T, S, T, S>>>() {
+            @Override
+            public Observable<EntryPair<T, S, T, S>> call() {
+                final List<SelfJoinIterator.NodePair<T, S>> pairs = SelfJoinIterator.split(root,
+                        maxDistance, parallelThreshold);
+                if (pairs.size() < parallelThreshold)
+                    return selfJoin(maxDistance);
+                else
+                    return Observable.from(pairs).flatMap(
+                            new Func1<SelfJoinIterator.NodePair<T, S>, Observable<EntryPair<T, S, T, S>>>() {
+                                @Override
+                                public Observable<EntryPair<T, S, T, S>> call(
+                                        final SelfJoinIterator.NodePair<T, S> pair) {
+                                    return Observable.from(
+                                            new Iterable<EntryPair<T, S, T, S>>() {
+                                                @Override
+                                                public Iterator<EntryPair<T, S, T, S>> iterator() {
+                                                    return new SelfJoinIterator<T, S>(pair,
+                                                            maxDistance);
+                                                }
+                                            }).subscribeOn(scheduler);
+                                }
+                            });
+            }
+        });
+    }
+
+    /**
+     * Returns for each entry of this tree its nearest k entries (k=maxCount)
+     * in the other tree (an all-k-nearest-neighbour join), measuring distance
+     * from the mbr of the entry of this tree as
+     * {@link #nearest(Rectangle, int)} does. The entries of one leaf of this
+     * tree are processed together: a single best-first search of the other
+     * tree from the mbr of the leaf finds the neighbours of all of them, with
+     * the largest k-th nearest distance found so far among them bounding the
+     * search. The pairs for each entry of this tree are emitted consecutively
+     * in ascending order of distance. Leaves are processed as they are
+     * requested so backpressure is supported.
+     *
+     * @param <U>
+     *            the value type of the other tree
+     * @param <R>
+     *            the geometry type of the other tree
+     * @param other
+     *            the tree to find the nearest entries in
+     * @param maxCount
+     *            max number of nearest entries per entry of this tree
+     * @return pairs of each entry of this tree with its nearest entries
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> nearestJoin(
+            final RTree<U, R> other, final int maxCount) {
+        return Observable.from(new Iterable<EntryPair<T, S, U, R>>() {
+            @Override
+            public Iterator<EntryPair<T, S, U, R>> iterator() {
+                return new NearestJoinIterator<T, S, U, R>(NearestJoinIterator.leaves(root),
+                        other.root, maxCount);
+            }
+        });
+    }
+
+    /**
+     * As for {@link #nearestJoin(RTree, int)} but the leaves of this tree are
+     * split into up to <code>parallelism</code> groups of adjacent leaves that
+     * are joined in parallel on the given scheduler and the results merged.
+     * The pairs for each entry of this tree are still emitted consecutively in
+     * ascending order of distance but the order of the entries of this tree
+     * is not deterministic.
+     *
+     * @param <U>
+     *            the value type of the other tree
+     * @param <R>
+     *            the geometry type of the other tree
+     * @param other
+     *            the tree to find the nearest entries in
+     * @param maxCount
+     *            max number of nearest entries per entry of this tree
+     * @param scheduler
+     *            scheduler that groups of leaves are joined on
+     * @param parallelism
+     *            max number of groups of leaves
+     * @return pairs of each entry of this tree with its nearest entries
+     */
+    public <U, R extends Geometry> Observable<EntryPair<T, S, U, R>> nearestJoin(
+            final RTree<U, R> other, final int maxCount, final Scheduler scheduler,
+            final int parallelism) {
+        Preconditions.checkArgument(parallelism >= 1);
+        return Observable.defer(new Func0<Observable<EntryPair<T, S, U, R>>>() {
+            @Override
+            public Observable<EntryPair<T, S, U, R>> call() {
+                final List<Leaf<T, S>> leaves = NearestJoinIterator.leaves(root);
+                final int groups = Math.min(parallelism, leaves.size());
+                if (groups <= 1)
+                    return nearestJoin(other, maxCount);
+                final List<List<Leaf<T, S>>> splits = new ArrayList<List<Leaf<T, S>>>(groups);
+                for (int i = 0; i < groups; i++)
+                    splits.add(leaves.subList(i * leaves.size() / groups, (i + 1) * leaves.size()
+                            / groups));
+                return Observable.from(splits).flatMap(
+                        new Func1<List<Leaf<T, S>>, Observable<EntryPair<T, S, U, R>>>() {
+                            @Override
+                            public Observable<EntryPair<T, S, U, R>> call(
+                                    final List<Leaf<T, S>> split) {
+                                return Observable.from(new Iterable<EntryPair<T, S, U, R>>() {
+                                    @Override
+                                    public Iterator<EntryPair<T, S, U, R>> iterator() {
+                                        return new NearestJoinIterator<T, S, U, R>(split,
+                                                other.root, maxCount);
+                                    }
+                                }).subscribeOn(scheduler);
+                            }
+                        });
+            }
+        });
+    }
+
     /**
      * Returns all entries in the tree as an {@link Observable} sequence.
      * 
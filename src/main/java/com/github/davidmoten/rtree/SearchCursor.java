@@ -0,0 +1,112 @@
+package com.github.davidmoten.rtree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * A reusable {@link Iterator} over the entries of an {@link RTree} that
+ * intersect a rectangle. Position a cursor using
+ * {@link RTree#search(Rectangle, SearchCursor)}. The depth-first traversal
+ * stack is held in arrays owned by the cursor that are kept between searches
+ * so once they have grown to the depth of the tree a search allocates
+ * nothing. Not thread safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class SearchCursor<T, S extends Geometry> implements Iterator<Entry<T, S>> {
+
+    private Node<T, S>[] nodes;
+    private int[] positions;
+    private int depth;
+    private Rectangle r;
+    private Entry<T, S> next;
+
+    /**
+     * Constructor.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public SearchCursor() {
+        this.nodes = new Node[8];
+        this.positions = new int[8];
+    }
+
+    void reset(Node<T, S> root, Rectangle r) {
+        while (depth > 0)
+            nodes[--depth] = null;
+        this.r = r;
+        if (root != null && root.geometry().mbr().intersects(r))
+            push(root);
+        next = computeNext();
+    }
+
+    private void push(Node<T, S> node) {
+        if (depth == nodes.length) {
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            Node<T, S>[] nodes2 = new Node[depth * 2];
+            System.arraycopy(nodes, 0, nodes2, 0, depth);
+            nodes = nodes2;
+            int[] positions2 = new int[depth * 2];
+            System.arraycopy(positions, 0, positions2, 0, depth);
+            positions = positions2;
+        }
+        nodes[depth] = node;
+        positions[depth] = 0;
+        depth++;
+    }
+
+    private Entry<T, S> computeNext() {
+        while (depth > 0) {
+            final Node<T, S> node = nodes[depth - 1];
+            final int n = node.count();
+            int i = positions[depth - 1];
+            if (node instanceof Leaf) {
+                final Leaf<T, S> leaf = (Leaf<T, S>) node;
+                for (; i < n; i++)
+                    if (leaf.intersects(i, r)) {
+                        positions[depth - 1] = i + 1;
+                        return leaf.entries().get(i);
+                    }
+                nodes[--depth] = null;
+            } else {
+                final NonLeaf<T, S> nonLeaf = (NonLeaf<T, S>) node;
+                while (i < n && !nonLeaf.children().get(i).geometry().mbr().intersects(r))
+                    i++;
+                if (i == n)
+                    nodes[--depth] = null;
+                else {
+                    positions[depth - 1] = i + 1;
+                    push(nonLeaf.children().get(i));
+                }
+            }
+        }
+        // allow the rectangle to be garbage collected
+        r = null;
+        return null;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Entry<T, S> next() {
+        if (next == null)
+            throw new NoSuchElementException();
+        final Entry<T, S> result = next;
+        next = computeNext();
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
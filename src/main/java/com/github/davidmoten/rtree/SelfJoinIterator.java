@@ -0,0 +1,214 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Optional;
+
+/**
+ * Finds the pairs of entries of one tree that are strictly less than a given
+ * distance apart by traversing the tree against itself (as
+ * {@link JoinIterator} does for two trees). A node paired with itself expands
+ * into the pairs of its children <code>(i, j)</code> with <code>i &lt;= j</code>
+ * and a leaf paired with itself into the pairs of its entries with
+ * <code>i &lt; j</code>, so each unordered pair of entries is found exactly
+ * once. Node pairs whose mbrs are not within the distance are pruned. Each
+ * pair of leaves is joined by nested loops and its results buffered. Not
+ * thread safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+final class SelfJoinIterator<T, S extends Geometry> implements Iterator<EntryPair<T, S, T, S>> {
+
+    private final double maxDistance;
+    private final double maxDistanceSquared;
+    // the node pairs still to be expanded
+    private final List<Node<T, S>> lefts = new ArrayList<Node<T, S>>();
+    private final List<Node<T, S>> rights = new ArrayList<Node<T, S>>();
+    // the pairs found by the last leaf join not yet returned
+    private final List<EntryPair<T, S, T, S>> buffer = new ArrayList<EntryPair<T, S, T, S>>();
+    private final LeafMbrs leafMbrs = new LeafMbrs();
+    private int bufferIndex;
+    private EntryPair<T, S, T, S> next;
+    private boolean computed;
+
+    SelfJoinIterator(Optional<? extends Node<T, S>> root, double maxDistance) {
+        this(maxDistance);
+        if (root.isPresent()) {
+            lefts.add(root.get());
+            rights.add(root.get());
+        }
+    }
+
+    /**
+     * Creates an iterator over the pairs below the given node pair only. The
+     * pair must be one returned by {@link #split(Optional, double, int)}.
+     */
+    SelfJoinIterator(NodePair<T, S> pair, double maxDistance) {
+        this(maxDistance);
+        lefts.add(pair.left);
+        rights.add(pair.right);
+    }
+
+    private SelfJoinIterator(double maxDistance) {
+        this.maxDistance = maxDistance;
+        this.maxDistanceSquared = maxDistance * maxDistance;
+    }
+
+    /**
+     * A pair of nodes whose entries are to be joined.
+     */
+    static final class NodePair<T, S extends Geometry> {
+        final Node<T, S> left;
+        final Node<T, S> right;
+
+        NodePair(Node<T, S> left, Node<T, S> right) {
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * Returns node pairs that between them yield every result of the self
+     * join exactly once. The tree is expanded level by level (never into the
+     * leaves) until there are at least <code>minPairs</code> pairs or the
+     * lowest non-leaf level is reached.
+     *
+     * @param root
+     *            root of the tree
+     * @param maxDistance
+     *            strict max distance between the entries of a pair
+     * @param minPairs
+     *            number of pairs at which to stop expanding
+     * @return node pairs to join
+     */
+    static <T, S extends Geometry> List<NodePair<T, S>> split(Optional<? extends Node<T, S>> root,
+            double maxDistance, int minPairs) {
+        final SelfJoinIterator<T, S> it = new SelfJoinIterator<T, S>(root, maxDistance);
+        while (it.lefts.size() > 0 && it.lefts.size() < minPairs
+                && it.lefts.get(0) instanceof NonLeaf
+                && ((NonLeaf<T, S>) it.lefts.get(0)).children().get(0) instanceof NonLeaf) {
+            // expand every pair of the current level
+            final int n = it.lefts.size();
+            for (int i = 0; i < n; i++)
+                it.expand(it.lefts.remove(0), it.rights.remove(0));
+        }
+        final List<NodePair<T, S>> pairs = new ArrayList<NodePair<T, S>>(it.lefts.size());
+        for (int i = 0; i < it.lefts.size(); i++)
+            pairs.add(new NodePair<T, S>(it.lefts.get(i), it.rights.get(i)));
+        return pairs;
+    }
+
+    private EntryPair<T, S, T, S> computeNext() {
+        while (bufferIndex == buffer.size()) {
+            buffer.clear();
+            bufferIndex = 0;
+            if (lefts.isEmpty())
+                return null;
+            final Node<T, S> a = lefts.remove(lefts.size() - 1);
+            final Node<T, S> b = rights.remove(rights.size() - 1);
+            expand(a, b);
+        }
+        return buffer.get(bufferIndex++);
+    }
+
+    private void expand(Node<T, S> a, Node<T, S> b) {
+        // nodes of one tree paired by this iterator are always at the same
+        // level
+        if (a instanceof Leaf)
+            joinLeaves((Leaf<T, S>) a, (Leaf<T, S>) b);
+        else {
+            final List<? extends Node<T, S>> as = ((NonLeaf<T, S>) a).children();
+            final List<? extends Node<T, S>> bs = ((NonLeaf<T, S>) b).children();
+            if (a == b) {
+                for (int i = 0; i < as.size(); i++) {
+                    final Rectangle r = as.get(i).geometry().mbr();
+                    push(as.get(i), as.get(i));
+                    for (int j = i + 1; j < as.size(); j++)
+                        if (near(r, as.get(j).geometry().mbr()))
+                            push(as.get(i), as.get(j));
+                }
+            } else {
+                final Rectangle rb = b.geometry().mbr();
+                for (int i = 0; i < as.size(); i++) {
+                    final Rectangle r = as.get(i).geometry().mbr();
+                    if (near(r, rb))
+                        for (int j = 0; j < bs.size(); j++)
+                            if (near(r, bs.get(j).geometry().mbr()))
+                                push(as.get(i), bs.get(j));
+                }
+            }
+        }
+    }
+
+    private void push(Node<T, S> a, Node<T, S> b) {
+        lefts.add(a);
+        rights.add(b);
+    }
+
+    private void joinLeaves(Leaf<T, S> a, Leaf<T, S> b) {
+        final float[] ma = leafMbrs.of(a);
+        final float[] mb = leafMbrs.of(b);
+        final int na = a.count();
+        final int nb = b.count();
+        final boolean self = a == b;
+        for (int i = 0; i < na; i++) {
+            final int p = 4 * i;
+            for (int j = self ? i + 1 : 0; j < nb; j++) {
+                final int q = 4 * j;
+                if (distanceSquared(ma[p], ma[p + 1], ma[p + 2], ma[p + 3], mb[q], mb[q + 1],
+                        mb[q + 2], mb[q + 3]) <= maxDistanceSquared)
+                    test(a.entries().get(i), b.entries().get(j));
+            }
+        }
+    }
+
+    private void test(Entry<T, S> a, Entry<T, S> b) {
+        if (a.geometry().distance(b.geometry().mbr()) < maxDistance)
+            buffer.add(new EntryPair<T, S, T, S>(a, b));
+    }
+
+    // the mbr tests use <= so that rounding never excludes a pair that the
+    // exact test in test(Entry, Entry) would accept
+    private boolean near(Rectangle a, Rectangle b) {
+        return distanceSquared(a.x1(), a.y1(), a.x2(), a.y2(), b.x1(), b.y1(), b.x2(),
+                b.y2()) <= maxDistanceSquared;
+    }
+
+    private static double distanceSquared(float ax1, float ay1, float ax2, float ay2, float bx1,
+            float by1, float bx2, float by2) {
+        final double dx = Math.max(0, (double) Math.max(ax1, bx1) - Math.min(ax2, bx2));
+        final double dy = Math.max(0, (double) Math.max(ay1, by1) - Math.min(ay2, by2));
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!computed) {
+            next = computeNext();
+            computed = true;
+        }
+        return next != null;
+    }
+
+    @Override
+    public EntryPair<T, S, T, S> next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        computed = false;
+        return next;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+final class TransientLeaf<T, S extends Geometry> extends TransientNode<T, S> {
+
+    private List<Entry<T, S>> entries;
+    private Rectangle mbr;
+    private final Context context;
+
+    /**
+     * Constructor.
+     *
+     * @param entries
+     *            a mutable list of entries that this leaf now owns
+     * @param context
+     *            options for the R-tree
+     */
+    TransientLeaf(List<Entry<T, S>> entries, Context context) {
+        this.entries = entries;
+        this.context = context;
+        this.mbr = Util.mbr(entries);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public int count() {
+        return entries.size();
+    }
+
+    @Override
+    TransientNode<T, S> addInPlace(Entry<T, S> entry) {
+        entries.add(entry);
+        mbr = mbr.add(entry.geometry().mbr());
+        if (entries.size() <= context.maxChildren())
+            return null;
+        else {
+            ListPair<Entry<T, S>> pair = context.splitter().split(entries, context.minChildren());
+            // copy the groups because they may be views of one list
+            entries = new ArrayList<Entry<T, S>>(pair.group1().list());
+            mbr = pair.group1().geometry().mbr();
+            return new TransientLeaf<T, S>(new ArrayList<Entry<T, S>>(pair.group2().list()),
+                    context);
+        }
+    }
+
+    @Override
+    Node<T, S> persistent() {
+        return new Leaf<T, S>(entries, context);
+    }
+
+}
@@ -0,0 +1,118 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rx.Subscriber;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * A node of a {@link TransientRTree} that is modified in place by inserts. A
+ * transient node is only reachable from the transient that created it and
+ * {@link #persistent()} copies it into an immutable {@link Leaf} or
+ * {@link NonLeaf}, so the nodes of an {@link RTree} are never modified.
+ *
+ * <p>
+ * Implements {@link Node} only so that the context's {@link Selector} can
+ * choose between children that are a mix of transient nodes and immutable
+ * nodes shared with the source tree. The query and path-copy operations of
+ * {@link Node} are not supported.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+abstract class TransientNode<T, S extends Geometry> implements Node<T, S> {
+
+    /**
+     * Returns the node as a transient node, copying it if it is an immutable
+     * node shared with the source tree.
+     *
+     * @param node
+     *            a transient node or an immutable node
+     * @param context
+     *            options for the R-tree
+     * @return the node itself if it is transient otherwise a transient copy
+     */
+    static <T, S extends Geometry> TransientNode<T, S> of(Node<T, S> node, Context context) {
+        if (node instanceof TransientNode)
+            return (TransientNode<T, S>) node;
+        else if (node instanceof Leaf)
+            return new TransientLeaf<T, S>(new ArrayList<Entry<T, S>>(
+                    ((Leaf<T, S>) node).entries()), context);
+        else
+            return new TransientNonLeaf<T, S>(new ArrayList<Node<T, S>>(
+                    ((NonLeaf<T, S>) node).children()), context);
+    }
+
+    /**
+     * Adds the entry to this node by modifying it (and transient descendants)
+     * in place, copying any descendants on the insertion path that are still
+     * shared with the source tree.
+     *
+     * @param entry
+     *            entry to add
+     * @return the new sibling of this node if this node had to be split
+     *         otherwise null
+     */
+    abstract TransientNode<T, S> addInPlace(Entry<T, S> entry);
+
+    /**
+     * Returns an immutable node with the same entries as this node. This node
+     * must not be modified afterwards.
+     *
+     * @return an immutable copy of this node
+     */
+    abstract Node<T, S> persistent();
+
+    @Override
+    public List<Node<T, S>> add(Entry<? extends T, ? extends S> entry) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Node<T, S>> addAll(List<Entry<T, S>> entries) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public NodeAndEntries<T, S> delete(Entry<? extends T, ? extends S> entry, boolean all) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void search(Func1<? super Geometry, Boolean> condition,
+            Subscriber<? super Entry<T, S>> subscriber) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int search(Rectangle r, RTree.Visitor<T, S> visitor) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int count(Rectangle r) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object aggregate() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object aggregate(Rectangle r) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int entryCount() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.google.common.base.Preconditions;
+
+final class TransientNonLeaf<T, S extends Geometry> extends TransientNode<T, S> {
+
+    // a mix of transient children and immutable children shared with the
+    // source tree
+    private List<Node<T, S>> children;
+    private Rectangle mbr;
+    private final Context context;
+
+    /**
+     * Constructor.
+     *
+     * @param children
+     *            a mutable list of children that this node now owns
+     * @param context
+     *            options for the R-tree
+     */
+    TransientNonLeaf(List<Node<T, S>> children, Context context) {
+        Preconditions.checkArgument(!children.isEmpty());
+        this.children = children;
+        this.context = context;
+        this.mbr = Util.mbr(children);
+    }
+
+    @Override
+    public Geometry geometry() {
+        return mbr;
+    }
+
+    @Override
+    public int count() {
+        return children.size();
+    }
+
+    @Override
+    TransientNode<T, S> addInPlace(Entry<T, S> entry) {
+        final Node<T, S> child = context.selector().select(entry.geometry().mbr(), children);
+        final TransientNode<T, S> child2 = TransientNode.of(child, context);
+        if (child2 != child)
+            children.set(indexOf(children, child), child2);
+        final TransientNode<T, S> sibling = child2.addInPlace(entry);
+        mbr = mbr.add(entry.geometry().mbr());
+        if (sibling != null)
+            children.add(sibling);
+        if (children.size() <= context.maxChildren())
+            return null;
+        else {
+            ListPair<Node<T, S>> pair = context.splitter().split(children, context.minChildren());
+            // copy the groups because they may be views of one list
+            children = new ArrayList<Node<T, S>>(pair.group1().list());
+            mbr = pair.group1().geometry().mbr();
+            return new TransientNonLeaf<T, S>(new ArrayList<Node<T, S>>(pair.group2().list()),
+                    context);
+        }
+    }
+
+    private static <T> int indexOf(List<T> list, T item) {
+        for (int i = 0; i < list.size(); i++)
+            if (list.get(i) == item)
+                return i;
+        throw new IllegalArgumentException("item not found in list");
+    }
+
+    @Override
+    Node<T, S> persistent() {
+        final List<Node<T, S>> list = new ArrayList<Node<T, S>>(children.size());
+        for (Node<T, S> child : children)
+            if (child instanceof TransientNode)
+                list.add(((TransientNode<T, S>) child).persistent());
+            else
+                list.add(child);
+        return new NonLeaf<T, S>(list, context);
+    }
+
+}
@@ -0,0 +1,137 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.google.common.base.Optional;
+
+/**
+ * A mutable version of an {@link RTree} obtained from {@link RTree#asTransient()}
+ * for adding many entries cheaply. Nodes are modified in place once they have
+ * been copied from the original tree so an insert does not copy the lists of
+ * the nodes on its path (as {@link RTree#add(Entry)} does) unless that is the
+ * first time the node has been touched.
+ *
+ * <p>
+ * Call {@link #persistent()} to obtain an immutable {@link RTree} with the
+ * entries. Only the nodes modified by this transient are copied (once each)
+ * into immutable nodes, the rest are shared with the original tree. The
+ * transient may not be used after that call.
+ *
+ * <p>
+ * Not thread safe.
+ *
+ * @param <T>
+ *            the entry value type
+ * @param <S>
+ *            the entry geometry type
+ */
+public final class TransientRTree<T, S extends Geometry> {
+
+    private final Context context;
+    // a TransientNode once the first entry has been added
+    private Optional<Node<T, S>> root;
+    private int size;
+    private boolean persisted;
+
+    TransientRTree(Optional<? extends Node<T, S>> root, int size, Context context) {
+        this.root = Optional.<Node<T, S>> fromNullable(root.orNull());
+        this.size = size;
+        this.context = context;
+    }
+
+    /**
+     * Adds an entry to the tree in place.
+     *
+     * @param entry
+     *            item to add
+     * @return this
+     */
+    public TransientRTree<T, S> add(Entry<? extends T, ? extends S> entry) {
+        checkEditable();
+        @SuppressWarnings("unchecked")
+        final Entry<T, S> e = (Entry<T, S>) entry;
+        if (root.isPresent()) {
+            final TransientNode<T, S> node = TransientNode.of(root.get(), context);
+            final TransientNode<T, S> sibling = node.addInPlace(e);
+            if (sibling == null)
+                root = Optional.<Node<T, S>> of(node);
+            else {
+                final List<Node<T, S>> children = new ArrayList<Node<T, S>>(
+                        context.maxChildren() + 1);
+                children.add(node);
+                children.add(sibling);
+                root = Optional.<Node<T, S>> of(new TransientNonLeaf<T, S>(children, context));
+            }
+        } else {
+            final List<Entry<T, S>> entries = new ArrayList<Entry<T, S>>(
+                    context.maxChildren() + 1);
+            entries.add(e);
+            root = Optional.<Node<T, S>> of(new TransientLeaf<T, S>(entries, context));
+        }
+        size++;
+        return this;
+    }
+
+    /**
+     * Adds an entry comprised of the given value and Geometry to the tree in
+     * place.
+     *
+     * @param value
+     *            the value of the {@link Entry} to be added
+     * @param geometry
+     *            the geometry of the {@link Entry} to be added
+     * @return this
+     */
+    public TransientRTree<T, S> add(T value, S geometry) {
+        return add(Entry.entry(value, geometry));
+    }
+
+    /**
+     * Adds the entries to the tree in place.
+     *
+     * @param entries
+     *            entries to add
+     * @return this
+     */
+    public TransientRTree<T, S> add(Iterable<Entry<T, S>> entries) {
+        for (Entry<T, S> entry : entries)
+            add(entry);
+        return this;
+    }
+
+    /**
+     * Returns the number of entries in the tree.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns an immutable {@link RTree} with the entries of this transient.
+     * The nodes modified by this transient are copied into immutable nodes and
+     * this transient may not be used afterwards.
+     *
+     * @return an immutable R-tree
+     * @throws IllegalStateException
+     *             if called more than once
+     */
+    public RTree<T, S> persistent() {
+        checkEditable();
+        persisted = true;
+        if (root.isPresent() && root.get() instanceof TransientNode)
+            return new RTree<T, S>(Optional.of(((TransientNode<T, S>) root.get()).persistent()),
+                    size, context);
+        else
+            return new RTree<T, S>(root, size, context);
+    }
+
+    private void checkEditable() {
+        if (persisted)
+            throw new IllegalStateException("transient used after persistent() call");
+    }
+
+}
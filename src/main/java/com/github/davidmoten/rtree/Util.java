@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.List;
 
 import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.ListPair;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 import com.google.common.base.Preconditions;
 
@@ -72,6 +73,59 @@ public final class Util {
         return result;
     }
 
+    /**
+     * Returns the list split into consecutive groups where the number of groups
+     * is the minimum possible without exceeding <code>maxSize</code> per group
+     * and the group sizes differ by at most one.
+     * 
+     * @param list
+     *            list to split
+     * @param maxSize
+     *            max size of a group
+     * @return consecutive groups covering the list
+     */
+    static <T> List<List<T>> partition(List<T> list, int maxSize) {
+        Preconditions.checkArgument(maxSize > 0);
+        final int numGroups = (list.size() + maxSize - 1) / maxSize;
+        final List<List<T>> groups = new ArrayList<List<T>>(numGroups);
+        int start = 0;
+        for (int i = 0; i < numGroups; i++) {
+            // spread the remainder across the first groups
+            int end = start + list.size() / numGroups + (i < list.size() % numGroups ? 1 : 0);
+            groups.add(new ArrayList<T>(list.subList(start, end)));
+            start = end;
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the items split into groups of at most
+     * {@link Context#maxChildren()} by repeatedly applying the context's
+     * {@link Splitter} to any group that is too big.
+     * 
+     * @param items
+     *            items to split
+     * @param context
+     *            supplies the splitter and the bounds on group size
+     * @return groups covering the items
+     */
+    static <T extends HasGeometry> List<List<T>> split(List<T> items, Context context) {
+        final List<List<T>> groups = new ArrayList<List<T>>();
+        split(items, context, groups);
+        return groups;
+    }
+
+    private static <T extends HasGeometry> void split(List<T> items, Context context,
+            List<List<T>> groups) {
+        if (items.size() <= context.maxChildren())
+            groups.add(items);
+        else {
+            ListPair<T> pair = context.splitter().split(items, context.minChildren());
+            split(pair.group1().list(), context, groups);
+            split(pair.group2().list(), context, groups);
+        }
+    }
+
     static <T> List<? extends T> replace(List<? extends T> list, T element, List<T> replacements) {
         List<T> list2 = new ArrayList<T>(list.size() + replacements.size());
         for (T node : list)
@@ -28,6 +28,10 @@ public final class Circle implements Geometry {
         return y;
     }
 
+    public float radius() {
+        return radius;
+    }
+
     @Override
     public Rectangle mbr() {
         return mbr;
@@ -35,17 +39,29 @@ public final class Circle implements Geometry {
 
     @Override
     public double distance(Rectangle r) {
-        return Math.max(0, new Point(x, y).distance(r) - radius);
+        return Math.max(0, Math.sqrt(centreDistanceSquared(r)) - radius);
     }
 
     @Override
     public boolean intersects(Rectangle r) {
-        return distance(r) == 0;
+        return centreDistanceSquared(r) <= (double) radius * radius;
     }
 
     public boolean intersects(Circle c) {
-        double total = radius + c.radius;
-        return new Point(x, y).distanceSquared(new Point(c.x, c.y)) <= total * total;
+        final double total = (double) radius + c.radius;
+        final double dx = (double) x - c.x;
+        final double dy = (double) y - c.y;
+        return dx * dx + dy * dy <= total * total;
+    }
+
+    /**
+     * Returns the square of the distance from the centre to the rectangle
+     * (zero if the rectangle contains the centre) without allocating.
+     */
+    private double centreDistanceSquared(Rectangle r) {
+        final double dx = Math.max(0, Math.max((double) r.x1() - x, (double) x - r.x2()));
+        final double dy = Math.max(0, Math.max((double) r.y1() - y, (double) y - r.y2()));
+        return dx * dx + dy * dy;
     }
 
     @Override
@@ -64,10 +80,10 @@ public final class Circle implements Geometry {
     }
 
     public boolean intersects(Point point) {
-        return Math.sqrt(sqr(x - point.x()) + sqr(y - point.y())) <= radius;
+        return sqr(x - point.x()) + sqr(y - point.y()) <= sqr(radius);
     }
 
-    private float sqr(float x) {
+    private static double sqr(double x) {
         return x * x;
     }
 }
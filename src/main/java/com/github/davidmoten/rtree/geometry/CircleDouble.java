@@ -0,0 +1,99 @@
+package com.github.davidmoten.rtree.geometry;
+
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * A circle with double precision centre and radius.
+ */
+public final class CircleDouble implements Geometry {
+
+    private final double x, y, radius;
+
+    protected CircleDouble(double x, double y, double radius) {
+        this.x = x;
+        this.y = y;
+        this.radius = radius;
+    }
+
+    public static CircleDouble create(double x, double y, double radius) {
+        return new CircleDouble(x, y, radius);
+    }
+
+    public double x() {
+        return x;
+    }
+
+    public double y() {
+        return y;
+    }
+
+    public double radius() {
+        return radius;
+    }
+
+    /**
+     * Returns the smallest float rectangle that contains this circle.
+     */
+    @Override
+    public Rectangle mbr() {
+        return Rectangle.create(RectangleDouble.floatBelow(x - radius),
+                RectangleDouble.floatBelow(y - radius), RectangleDouble.floatAbove(x + radius),
+                RectangleDouble.floatAbove(y + radius));
+    }
+
+    @Override
+    public double distance(Rectangle r) {
+        return Math.max(0,
+                RectangleDouble.distance(x, y, x, y, r.x1(), r.y1(), r.x2(), r.y2()) - radius);
+    }
+
+    public double distance(RectangleDouble r) {
+        return Math.max(0,
+                RectangleDouble.distance(x, y, x, y, r.x1(), r.y1(), r.x2(), r.y2()) - radius);
+    }
+
+    @Override
+    public boolean intersects(Rectangle r) {
+        return distance(r) == 0;
+    }
+
+    public boolean intersects(RectangleDouble r) {
+        return distance(r) == 0;
+    }
+
+    public boolean intersects(CircleDouble c) {
+        double total = radius + c.radius;
+        return sqr(x - c.x) + sqr(y - c.y) <= total * total;
+    }
+
+    public boolean intersects(PointDouble p) {
+        return sqr(x - p.x()) + sqr(y - p.y()) <= radius * radius;
+    }
+
+    private static double sqr(double x) {
+        return x * x;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(x, y, radius);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Optional<CircleDouble> other = ObjectsHelper.asClass(obj, CircleDouble.class);
+        if (other.isPresent()) {
+            return Objects.equal(x, other.get().x) && Objects.equal(y, other.get().y)
+                    && Objects.equal(radius, other.get().radius);
+        } else
+            return false;
+    }
+
+    @Override
+    public String toString() {
+        return "CircleDouble [x=" + x + ", y=" + y + ", radius=" + radius + "]";
+    }
+
+}
@@ -17,5 +17,17 @@ public final class Geometries {
     public static Circle circle(double x, double y, double radius) {
         return Circle.create(x, y, radius);
     }
+
+    public static PointDouble pointDouble(double x, double y) {
+        return PointDouble.create(x, y);
+    }
+
+    public static RectangleDouble rectangleDouble(double x1, double y1, double x2, double y2) {
+        return RectangleDouble.create(x1, y1, x2, y2);
+    }
+
+    public static CircleDouble circleDouble(double x, double y, double radius) {
+        return CircleDouble.create(x, y, radius);
+    }
     
 }
@@ -22,4 +22,32 @@ public class Intersects {
 		}
 	};
 
+	public static final Func2<PointDouble, RectangleDouble, Boolean> pointDoubleIntersectsRectangleDouble = new Func2<PointDouble, RectangleDouble, Boolean>() {
+		@Override
+		public Boolean call(PointDouble point, RectangleDouble rectangle) {
+			return point.intersects(rectangle);
+		}
+	};
+
+	public static final Func2<RectangleDouble, RectangleDouble, Boolean> rectangleDoubleIntersectsRectangleDouble = new Func2<RectangleDouble, RectangleDouble, Boolean>() {
+		@Override
+		public Boolean call(RectangleDouble a, RectangleDouble b) {
+			return a.intersects(b);
+		}
+	};
+
+	public static final Func2<PointDouble, CircleDouble, Boolean> pointDoubleIntersectsCircleDouble = new Func2<PointDouble, CircleDouble, Boolean>() {
+		@Override
+		public Boolean call(PointDouble point, CircleDouble circle) {
+			return circle.intersects(point);
+		}
+	};
+
+	public static final Func2<RectangleDouble, CircleDouble, Boolean> rectangleDoubleIntersectsCircleDouble = new Func2<RectangleDouble, CircleDouble, Boolean>() {
+		@Override
+		public Boolean call(RectangleDouble rectangle, CircleDouble circle) {
+			return circle.intersects(rectangle);
+		}
+	};
+
 }
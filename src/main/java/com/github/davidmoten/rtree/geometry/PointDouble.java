@@ -0,0 +1,89 @@
+package com.github.davidmoten.rtree.geometry;
+
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+/**
+ * A point with double precision coordinates. Unlike {@link Point} no
+ * {@link Rectangle} is retained so a point uses less memory but
+ * {@link #mbr()} creates a new object on each call.
+ */
+public final class PointDouble implements Geometry {
+
+    private final double x, y;
+
+    protected PointDouble(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public static PointDouble create(double x, double y) {
+        return new PointDouble(x, y);
+    }
+
+    public double x() {
+        return x;
+    }
+
+    public double y() {
+        return y;
+    }
+
+    /**
+     * Returns the smallest float rectangle that contains this point.
+     */
+    @Override
+    public Rectangle mbr() {
+        return Rectangle.create(RectangleDouble.floatBelow(x), RectangleDouble.floatBelow(y),
+                RectangleDouble.floatAbove(x), RectangleDouble.floatAbove(y));
+    }
+
+    @Override
+    public double distance(Rectangle r) {
+        return RectangleDouble.distance(x, y, x, y, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    public double distance(RectangleDouble r) {
+        return RectangleDouble.distance(x, y, x, y, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    public double distance(PointDouble p) {
+        return Math.sqrt(distanceSquared(p));
+    }
+
+    public double distanceSquared(PointDouble p) {
+        double dx = x - p.x;
+        double dy = y - p.y;
+        return dx * dx + dy * dy;
+    }
+
+    @Override
+    public boolean intersects(Rectangle r) {
+        return r.contains(x, y);
+    }
+
+    public boolean intersects(RectangleDouble r) {
+        return r.contains(x, y);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(x, y);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Optional<PointDouble> other = ObjectsHelper.asClass(obj, PointDouble.class);
+        if (other.isPresent()) {
+            return Objects.equal(x, other.get().x) && Objects.equal(y, other.get().y);
+        } else
+            return false;
+    }
+
+    @Override
+    public String toString() {
+        return "PointDouble [x=" + x + ", y=" + y + "]";
+    }
+
+}
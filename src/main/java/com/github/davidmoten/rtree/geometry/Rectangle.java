@@ -54,6 +54,18 @@ public final class Rectangle implements Geometry, HasGeometry {
         return x >= x1 && x <= x2 && y >= y1 && y <= y2;
     }
 
+    /**
+     * Returns true if r lies entirely within this rectangle (boundaries
+     * included).
+     * 
+     * @param r
+     *            rectangle to test
+     * @return true if this rectangle contains r
+     */
+    public boolean contains(Rectangle r) {
+        return r.x1 >= x1 && r.x2 <= x2 && r.y1 >= y1 && r.y2 <= y2;
+    }
+
     @Override
     public boolean intersects(Rectangle r) {
         float xMaxLeft = Math.max(x1(), r.x1());
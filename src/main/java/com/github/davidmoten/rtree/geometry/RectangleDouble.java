@@ -0,0 +1,143 @@
+package com.github.davidmoten.rtree.geometry;
+
+import com.github.davidmoten.util.ObjectsHelper;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+/**
+ * A rectangle with double precision coordinates. Its {@link #mbr()} is the
+ * smallest float {@link Rectangle} containing it so the tree indexes it like
+ * any other geometry while intersection and distance use the exact
+ * coordinates.
+ */
+public final class RectangleDouble implements Geometry {
+    private final double x1, y1, x2, y2;
+
+    protected RectangleDouble(double x1, double y1, double x2, double y2) {
+        Preconditions.checkArgument(x2 >= x1);
+        Preconditions.checkArgument(y2 >= y1);
+        this.x1 = x1;
+        this.y1 = y1;
+        this.x2 = x2;
+        this.y2 = y2;
+    }
+
+    public static RectangleDouble create(double x1, double y1, double x2, double y2) {
+        return new RectangleDouble(x1, y1, x2, y2);
+    }
+
+    public double x1() {
+        return x1;
+    }
+
+    public double y1() {
+        return y1;
+    }
+
+    public double x2() {
+        return x2;
+    }
+
+    public double y2() {
+        return y2;
+    }
+
+    public double area() {
+        return (x2 - x1) * (y2 - y1);
+    }
+
+    public RectangleDouble add(RectangleDouble r) {
+        return new RectangleDouble(Math.min(x1, r.x1), Math.min(y1, r.y1), Math.max(x2, r.x2),
+                Math.max(y2, r.y2));
+    }
+
+    public boolean contains(double x, double y) {
+        return x >= x1 && x <= x2 && y >= y1 && y <= y2;
+    }
+
+    /**
+     * Returns the smallest float rectangle that contains this rectangle. A new
+     * object is returned on each call.
+     */
+    @Override
+    public Rectangle mbr() {
+        return Rectangle.create(floatBelow(x1), floatBelow(y1), floatAbove(x2), floatAbove(y2));
+    }
+
+    @Override
+    public boolean intersects(Rectangle r) {
+        return intersects(r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    public boolean intersects(RectangleDouble r) {
+        return intersects(r.x1, r.y1, r.x2, r.y2);
+    }
+
+    private boolean intersects(double rx1, double ry1, double rx2, double ry2) {
+        return Math.max(x1, rx1) <= Math.min(x2, rx2) && Math.max(y1, ry1) <= Math.min(y2, ry2);
+    }
+
+    @Override
+    public double distance(Rectangle r) {
+        return distance(x1, y1, x2, y2, r.x1(), r.y1(), r.x2(), r.y2());
+    }
+
+    public double distance(RectangleDouble r) {
+        return distance(x1, y1, x2, y2, r.x1, r.y1, r.x2, r.y2);
+    }
+
+    /**
+     * Returns the Euclidean distance between the two rectangles given by their
+     * coordinates (zero if they intersect).
+     */
+    static double distance(double ax1, double ay1, double ax2, double ay2, double bx1,
+            double by1, double bx2, double by2) {
+        final double dx = Math.max(0, Math.max(ax1, bx1) - Math.min(ax2, bx2));
+        final double dy = Math.max(0, Math.max(ay1, by1) - Math.min(ay2, by2));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns the largest float that is less than or equal to x.
+     */
+    static float floatBelow(double x) {
+        final float f = (float) x;
+        if (f > x)
+            return Math.nextAfter(f, Double.NEGATIVE_INFINITY);
+        else
+            return f;
+    }
+
+    /**
+     * Returns the smallest float that is greater than or equal to x.
+     */
+    static float floatAbove(double x) {
+        final float f = (float) x;
+        if (f < x)
+            return Math.nextAfter(f, Double.POSITIVE_INFINITY);
+        else
+            return f;
+    }
+
+    @Override
+    public String toString() {
+        return "RectangleDouble [x1=" + x1 + ", y1=" + y1 + ", x2=" + x2 + ", y2=" + y2 + "]";
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(x1, y1, x2, y2);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        Optional<RectangleDouble> other = ObjectsHelper.asClass(obj, RectangleDouble.class);
+        if (other.isPresent()) {
+            return Objects.equal(x1, other.get().x1) && Objects.equal(x2, other.get().x2)
+                    && Objects.equal(y1, other.get().y1) && Objects.equal(y2, other.get().y2);
+        } else
+            return false;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circle;
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Checks each read-only copy ({@link RTree#freeze()} and
+ * {@link RTree#offHeap()}) against the tree it was copied from.
+ */
+@RunWith(Parameterized.class)
+public class AbstractFlatRTreeTest {
+
+    enum Copy {
+        FREEZE {
+            @Override
+            <T, S extends Geometry> AbstractFlatRTree<T, S> of(RTree<T, S> tree) {
+                return tree.freeze();
+            }
+        },
+        OFF_HEAP {
+            @Override
+            <T, S extends Geometry> AbstractFlatRTree<T, S> of(RTree<T, S> tree) {
+                return tree.offHeap();
+            }
+        };
+
+        abstract <T, S extends Geometry> AbstractFlatRTree<T, S> of(RTree<T, S> tree);
+    }
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> copies() {
+        return Arrays.asList(new Object[] { Copy.FREEZE }, new Object[] { Copy.OFF_HEAP });
+    }
+
+    private final Copy copy;
+
+    public AbstractFlatRTreeTest(Copy copy) {
+        this.copy = copy;
+    }
+
+    @Test
+    public void testEmptyTree() {
+        AbstractFlatRTree<Object, Geometry> tree = copy.of(RTree.create());
+        assertTrue(tree.isEmpty());
+        assertEquals(0, (int) tree.search(rectangle(0, 0, 1, 1)).count().toBlocking().single());
+        assertEquals(0, (int) tree.entries().count().toBlocking().single());
+        assertEquals(0, (int) tree.nearest(point(1, 1), 5).count().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchReturnsSameResultsAsRTree() {
+        for (RTree<Object, Point> tree : Arrays.asList(
+                RTree.maxChildren(4).<Object, Point> create().add(GreekEarthquakes.entriesList()),
+                RTree.maxChildren(10).<Object, Point> create(GreekEarthquakes.entriesList()))) {
+            AbstractFlatRTree<Object, Point> flat = copy.of(tree);
+            assertEquals(tree.size(), flat.size());
+            assertEquals(set(tree.entries()), set(flat.entries()));
+            for (Rectangle r : Arrays.asList(rectangle(40, 27.0, 40.5, 27.5),
+                    rectangle(35, 20, 39, 24), rectangle(0, 0, 1, 1)))
+                assertEquals(set(tree.search(r)), set(flat.search(r)));
+            Point p = point(38, 25);
+            assertEquals(set(tree.search(p, 0.5)), set(flat.search(p, 0.5)));
+            assertEquals(distances(p, tree.nearest(p, 1, 10)),
+                    distances(p, flat.nearest(p, 1, 10)));
+            assertEquals(distances(p, tree.nearest(p, 10)), distances(p, flat.nearest(p, 10)));
+        }
+    }
+
+    @Test
+    public void testSearchWithArbitraryCondition() {
+        List<Entry<Object, Geometry>> entries = RTreeTest.createRandomEntries(1000);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                entries);
+        final Geometry c = circle(500, 500, 200);
+        Func1<Geometry, Boolean> condition = new Func1<Geometry, Boolean>() {
+            @Override
+            public Boolean call(Geometry g) {
+                return c.intersects(g.mbr());
+            }
+        };
+        assertEquals(set(tree.search(condition)), set(copy.of(tree).search(condition)));
+    }
+
+    @Test
+    public void testSearchSupportsBackpressure() {
+        AbstractFlatRTree<Object, Point> tree = copy.of(RTree.maxChildren(4)
+                .<Object, Point> create(GreekEarthquakes.entriesList()));
+        assertEquals(5, (int) tree.search(rectangle(35, 20, 39, 24)).take(5).count()
+                .toBlocking().single());
+    }
+
+    private static <T, S extends Geometry> HashSet<Entry<T, S>> set(
+            Observable<Entry<T, S>> entries) {
+        return new HashSet<Entry<T, S>>(entries.toList().toBlocking().single());
+    }
+
+    private static <T> List<Double> distances(final Point p, Observable<Entry<T, Point>> entries) {
+        return entries.map(new Func1<Entry<T, Point>, Double>() {
+            @Override
+            public Double call(Entry<T, Point> entry) {
+                return entry.geometry().distance(p);
+            }
+        }).toList().toBlocking().single();
+    }
+
+}
@@ -18,9 +18,10 @@ import rx.Subscriber;
 import rx.Subscription;
 import rx.functions.Func1;
 
+import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
 import com.github.davidmoten.rtree.geometry.Rectangle;
-import com.github.davidmoten.util.ImmutableStack;
 import com.github.davidmoten.util.TestingUtil;
 
 public class BackpressureTest {
@@ -34,7 +35,7 @@ public class BackpressureTest {
     @Test
     public void testBackpressureSearch() {
         Subscriber<Object> sub = Mockito.mock(Subscriber.class);
-        ImmutableStack<NodePosition<Object, Geometry>> stack = ImmutableStack.empty();
+        NodeStack<Object, Geometry> stack = new NodeStack<Object, Geometry>();
         Func1<Geometry, Boolean> condition = Mockito.mock(Func1.class);
         Backpressure.search(condition, sub, stack, 1);
         Mockito.verify(sub, Mockito.never()).onNext(Mockito.any());
@@ -82,13 +83,12 @@ public class BackpressureTest {
             }
         });
         Node<Object, Geometry> node = Mockito.mock(Node.class);
-        NodePosition<Object, Geometry> np = new NodePosition<Object, Geometry>(node, 1);
-        ImmutableStack<NodePosition<Object, Geometry>> stack = ImmutableStack
-                .<NodePosition<Object, Geometry>> empty().push(np);
+        NodeStack<Object, Geometry> stack = NodeStack.create(node);
+        stack.setPosition(1);
         Func1<Geometry, Boolean> condition = Mockito.mock(Func1.class);
-        ImmutableStack<NodePosition<Object, Geometry>> stack2 = Backpressure.search(condition, sub,
-                stack, 0);
-        assertTrue(stack2 == stack);
+        Backpressure.search(condition, sub, stack, 0);
+        assertTrue(stack.node() == node);
+        assertEquals(1, stack.position());
     }
 
     @SuppressWarnings("unchecked")
@@ -125,13 +125,11 @@ public class BackpressureTest {
         });
         sub.unsubscribe();
         Node<Object, Geometry> node = Mockito.mock(Node.class);
-        NodePosition<Object, Geometry> np = new NodePosition<Object, Geometry>(node, 1);
-        ImmutableStack<NodePosition<Object, Geometry>> stack = ImmutableStack
-                .<NodePosition<Object, Geometry>> empty().push(np);
+        NodeStack<Object, Geometry> stack = NodeStack.create(node);
+        stack.setPosition(1);
         Func1<Geometry, Boolean> condition = Mockito.mock(Func1.class);
-        ImmutableStack<NodePosition<Object, Geometry>> stack2 = Backpressure.search(condition, sub,
-                stack, 1);
-        assertTrue(stack2.isEmpty());
+        Backpressure.search(condition, sub, stack, 1);
+        assertTrue(stack.isEmpty());
     }
 
     @Test
@@ -222,6 +220,54 @@ public class BackpressureTest {
         assertEquals(expected, found);
     }
 
+    @Test
+    public void testNodeStackGrows() {
+        Node<Object, Geometry> node = RTree.<Object, Geometry> create().add(e(1)).root().get();
+        NodeStack<Object, Geometry> stack = new NodeStack<Object, Geometry>();
+        for (int i = 0; i < 20; i++) {
+            stack.push(node);
+            stack.setPosition(i);
+        }
+        for (int i = 19; i >= 0; i--) {
+            assertEquals(i, stack.position());
+            stack.pop();
+        }
+        assertTrue(stack.isEmpty());
+    }
+
+    @Test
+    public void testBackpressureInBatchesReturnsSameEntriesAsRequestAll() {
+        RTree<Object, Point> tree = RTree.star().maxChildren(4).<Object, Point> create()
+                .add(GreekEarthquakes.entriesList());
+        Rectangle r = Geometries.rectangle(35, 20, 39, 24);
+        final List<Entry<Object, Point>> found = new ArrayList<Entry<Object, Point>>();
+        tree.search(r).subscribe(new Subscriber<Entry<Object, Point>>() {
+
+            int count = 0;
+
+            @Override
+            public void onStart() {
+                request(7);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onNext(Entry<Object, Point> t) {
+                found.add(t);
+                if (++count % 7 == 0)
+                    request(7);
+            }
+        });
+        assertEquals(tree.search(r).toList().toBlocking().single(), found);
+    }
+
     private static Subscriber<Entry<Object, Rectangle>> backpressureSubscriber(
             final Set<Entry<Object, Rectangle>> found) {
         return new Subscriber<Entry<Object, Rectangle>>() {
@@ -0,0 +1,49 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+
+/**
+ * Shows how bulk loading scales with the number of threads.
+ */
+@State(Scope.Benchmark)
+public class BenchmarksBulkLoad {
+
+    private static final int NUM_ENTRIES = 1000000;
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private List<Entry<Object, Point>> entries;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(12345);
+        entries = new ArrayList<Entry<Object, Point>>(NUM_ENTRIES);
+        for (int i = 0; i < NUM_ENTRIES; i++)
+            entries.add(Entry.<Object, Point> entry(i,
+                    Geometries.point(random.nextDouble() * 1000, random.nextDouble() * 1000)));
+    }
+
+    @Benchmark
+    public RTree<Object, Point> strTreeCreateFromMillionPointsMaxChildren032() {
+        return RTree.maxChildren(32).bulkLoadThreads(threads).<Object, Point> create(entries);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> hilbertTreeCreateFromMillionPointsMaxChildren032() {
+        return RTree.maxChildren(32).packer(new PackerHilbert()).bulkLoadThreads(threads)
+                .<Object, Point> create(entries);
+    }
+
+}
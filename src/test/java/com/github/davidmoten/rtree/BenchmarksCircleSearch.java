@@ -0,0 +1,71 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Intersects.pointIntersectsCircle;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Circle;
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Compares {@link RTree#search(Circle)}, which prunes nodes by the circle, with
+ * searching the mbr of the circle and filtering. The number of nodes each
+ * visits for the query is printed on setup.
+ */
+@State(Scope.Benchmark)
+public class BenchmarksCircleSearch {
+
+    @Param({ "0.1", "0.5", "2" })
+    public double radius;
+
+    private final List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+
+    private final RTree<Object, Point> tree = RTree.maxChildren(10).star()
+            .<Object, Point> create().add(entries);
+
+    private Circle circle;
+
+    @Setup
+    public void setup() {
+        circle = Geometries.circle(38.5, 23, radius);
+        System.out.println("nodes visited: circle=" + nodesVisited(new RTree.CircleCondition(circle))
+                + ", mbr=" + nodesVisited(RTree.intersects(circle.mbr())));
+    }
+
+    @Benchmark
+    public int searchCircle() {
+        return tree.search(circle).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int searchMbrThenFilter() {
+        return tree.search(circle, pointIntersectsCircle).count().toBlocking().single();
+    }
+
+    private int nodesVisited(final Func1<Geometry, Boolean> condition) {
+        final int[] count = new int[1];
+        tree.search(new Func1<Geometry, Boolean>() {
+            @Override
+            public Boolean call(Geometry g) {
+                final boolean result = condition.call(g);
+                // the entries are points so the rectangles are nodes
+                if (result && g instanceof Rectangle)
+                    count[0]++;
+                return result;
+            }
+        }).subscribe();
+        return count[0];
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+
+/**
+ * Reports reader and writer throughput of a {@link ConcurrentRTree} shared by
+ * reading and writing threads.
+ */
+@State(Scope.Group)
+public class BenchmarksConcurrentRTree {
+
+    private ConcurrentRTree<Object, Point> tree;
+
+    @Setup
+    public void setup() {
+        tree = ConcurrentRTree.create(RTree.maxChildren(10).<Object, Point> create(
+                GreekEarthquakes.entriesList()));
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private final List<Entry<Object, Point>> entries = new ArrayList<Entry<Object, Point>>();
+        private int index;
+        private boolean adding = true;
+
+        @Setup
+        public void setup() {
+            Random random = new Random();
+            for (int i = 0; i < 1000; i++)
+                entries.add(Entry.<Object, Point> entry(i,
+                        Geometries.point(34 + random.nextDouble() * 8,
+                                19 + random.nextDouble() * 10)));
+        }
+
+        // adds all the entries then deletes them all so the tree size is stable
+        Entry<Object, Point> next() {
+            Entry<Object, Point> entry = entries.get(index++);
+            if (index == entries.size()) {
+                index = 0;
+                adding = !adding;
+            }
+            return entry;
+        }
+    }
+
+    @Benchmark
+    @Group("oneWriter")
+    @GroupThreads(3)
+    public void oneWriterRead() {
+        search();
+    }
+
+    @Benchmark
+    @Group("oneWriter")
+    @GroupThreads(1)
+    public RTree<Object, Point> oneWriterWrite(Writer writer) {
+        return write(writer);
+    }
+
+    @Benchmark
+    @Group("fourWriters")
+    @GroupThreads(4)
+    public void fourWritersRead() {
+        search();
+    }
+
+    @Benchmark
+    @Group("fourWriters")
+    @GroupThreads(4)
+    public RTree<Object, Point> fourWritersWrite(Writer writer) {
+        return write(writer);
+    }
+
+    private void search() {
+        // should return 22 results
+        tree.tree().search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
+    }
+
+    private RTree<Object, Point> write(Writer writer) {
+        boolean adding = writer.adding;
+        Entry<Object, Point> entry = writer.next();
+        if (adding)
+            return tree.add(entry);
+        else
+            return tree.delete(entry);
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Compares trees of the Greek earthquake points stored as {@link Point} with
+ * trees of the same points stored as
+ * {@link com.github.davidmoten.rtree.geometry.PointDouble}. The heap retained
+ * by the entries of each is printed during setup.
+ */
+@State(Scope.Benchmark)
+public class BenchmarksDoubleGeometry {
+
+    @Param({ "float", "double" })
+    public String precision;
+
+    private List<Entry<Object, Geometry>> entries;
+
+    private RTree<Object, Geometry> tree;
+
+    private final Rectangle searchRegion = Geometries.rectangle(40, 27.0, 40.5, 27.5);
+
+    @Setup
+    public void setup() {
+        List<Entry<Object, Point>> points = GreekEarthquakes.entriesList();
+        long before = usedHeap();
+        entries = new ArrayList<Entry<Object, Geometry>>(points.size());
+        for (Entry<Object, Point> entry : points) {
+            final Geometry g;
+            if (precision.equals("double"))
+                g = Geometries.pointDouble(entry.geometry().x(), entry.geometry().y());
+            else
+                g = Geometries.point(entry.geometry().x(), entry.geometry().y());
+            entries.add(Entry.entry(entry.value(), g));
+        }
+        long retained = usedHeap() - before;
+        System.out.println("\n" + precision + " entries retained heap = " + retained / 1024
+                + "KB for " + entries.size() + " entries");
+        tree = RTree.maxChildren(10).<Object, Geometry> create().add(entries);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime r = Runtime.getRuntime();
+        return r.totalMemory() - r.freeMemory();
+    }
+
+    @Benchmark
+    public RTree<Object, Geometry> createFromGreekDataMaxChildren010() {
+        return RTree.maxChildren(10).<Object, Geometry> create().add(entries);
+    }
+
+    @Benchmark
+    public void searchGreekDataMaxChildren010() {
+        tree.search(searchRegion).subscribe();
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import rx.functions.Func2;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Joins the Greek earthquake points with a grid of about 35,000 small regions
+ * covering them, comparing {@link RTree#join(RTree, Func2, boolean)} with a
+ * search of the points for each region.
+ */
+@State(Scope.Benchmark)
+public class BenchmarksJoin {
+
+    @Param({ "10", "32" })
+    public int maxChildren;
+
+    private RTree<Object, Point> points;
+
+    private RTree<Object, Rectangle> regions;
+
+    private List<Rectangle> regionList;
+
+    private static final Func2<Point, Rectangle, Boolean> POINT_IN_REGION = new Func2<Point, Rectangle, Boolean>() {
+        @Override
+        public Boolean call(Point p, Rectangle r) {
+            return r.contains(p.x(), p.y());
+        }
+    };
+
+    @Setup
+    public void setup() {
+        points = RTree.maxChildren(maxChildren).star().<Object, Point> create()
+                .add(GreekEarthquakes.entriesList());
+        regionList = new ArrayList<Rectangle>();
+        List<Entry<Object, Rectangle>> entries = new ArrayList<Entry<Object, Rectangle>>();
+        for (float x = 34; x < 42; x += 0.05f)
+            for (float y = 19; y < 30; y += 0.05f) {
+                Rectangle r = Geometries.rectangle(x, y, x + 0.04f, y + 0.04f);
+                regionList.add(r);
+                entries.add(Entry.<Object, Rectangle> entry(null, r));
+            }
+        regions = RTree.maxChildren(maxChildren).star().<Object, Rectangle> create().add(entries);
+    }
+
+    @Benchmark
+    public int join() {
+        return points.join(regions, POINT_IN_REGION, false).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int joinWithPlaneSweep() {
+        return points.join(regions, POINT_IN_REGION, true).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int searchForEachRegion() {
+        int count = 0;
+        for (Rectangle r : regionList)
+            count += points.search(r).count().toBlocking().single();
+        return count;
+    }
+
+}
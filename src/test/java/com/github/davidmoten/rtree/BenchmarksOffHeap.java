@@ -0,0 +1,83 @@
+package com.github.davidmoten.rtree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Compares an {@link RTree} held as an object graph with an
+ * {@link OffHeapRTree} of the same entries. The heap retained by each is
+ * printed during setup and the full GC benchmark measures the pause caused by
+ * tracing the retained tree.
+ */
+@State(Scope.Benchmark)
+public class BenchmarksOffHeap {
+
+    private static final int NUM_ENTRIES = 1000000;
+
+    @Param({ "objects", "offHeap" })
+    public String storage;
+
+    private RTree<Object, Point> tree;
+    private OffHeapRTree<Object, Point> offHeapTree;
+
+    private final Rectangle searchRegion = Geometries.rectangle(500, 500, 510, 510);
+
+    @Setup
+    public void setup() {
+        Random random = new Random(12345);
+        List<Entry<Object, Point>> entries = new ArrayList<Entry<Object, Point>>(NUM_ENTRIES);
+        for (int i = 0; i < NUM_ENTRIES; i++)
+            entries.add(Entry.<Object, Point> entry(i,
+                    Geometries.point(random.nextDouble() * 1000, random.nextDouble() * 1000)));
+        long before = usedHeap();
+        // build incrementally so that the object graph is typical of a tree
+        // that has been modified
+        RTree<Object, Point> t = RTree.maxChildren(10).<Object, Point> create().add(entries);
+        if (storage.equals("offHeap"))
+            offHeapTree = t.offHeap();
+        else
+            tree = t;
+        t = null;
+        long retained = usedHeap() - before;
+        System.out.println("\n" + storage + " retained heap excluding entries = " + retained
+                / 1024 / 1024 + "MB");
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        Runtime r = Runtime.getRuntime();
+        return r.totalMemory() - r.freeMemory();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fullGcWithTreeRetained() {
+        System.gc();
+    }
+
+    @Benchmark
+    public void searchMillionPoints() {
+        if (tree != null)
+            tree.search(searchRegion).subscribe();
+        else
+            offHeapTree.search(searchRegion).subscribe();
+    }
+
+}
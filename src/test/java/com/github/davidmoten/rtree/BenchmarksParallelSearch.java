@@ -0,0 +1,64 @@
+package com.github.davidmoten.rtree;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+/**
+ * Searches most of the Greek earthquake data with
+ * {@link RTree#search(Rectangle, Scheduler, int)} using a pool of the given
+ * number of threads. Speed-up is bounded by the number of cores available.
+ */
+@State(Scope.Benchmark)
+public class BenchmarksParallelSearch {
+
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    private final List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+
+    private final RTree<Object, Point> tree = RTree.maxChildren(10).star()
+            .<Object, Point> create().add(entries);
+
+    private final Rectangle region = Geometries.rectangle(34, 19, 42, 30);
+
+    private ExecutorService executor;
+
+    private Scheduler scheduler;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(threads);
+        scheduler = Schedulers.from(executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int searchSequential() {
+        return tree.search(region).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int searchParallel() {
+        return tree.search(region, scheduler, 4 * threads).count().toBlocking().single();
+    }
+
+}
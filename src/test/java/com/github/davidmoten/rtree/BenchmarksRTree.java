@@ -2,6 +2,8 @@ package com.github.davidmoten.rtree;
 
 import static com.github.davidmoten.rtree.Utilities.entries1000;
 
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.openjdk.jmh.annotations.Benchmark;
@@ -33,6 +35,9 @@ public class BenchmarksRTree {
     private final RTree<Object, Point> starTreeM10 = RTree.maxChildren(10).star()
             .<Object, Point> create().add(entries);
 
+    private final RTree<Object, Point> starTreeM10Quantized = RTree.maxChildren(10).star()
+            .quantizeChildMbrs().<Object, Point> create().add(entries);
+
     private final RTree<Object, Point> defaultTreeM32 = RTree.maxChildren(32)
             .<Object, Point> create().add(entries);
 
@@ -45,6 +50,34 @@ public class BenchmarksRTree {
     private final RTree<Object, Point> starTreeM128 = RTree.maxChildren(128).star()
             .<Object, Point> create().add(entries);
 
+    private final RTree<Object, Point> strTreeM10 = RTree.maxChildren(10)
+            .<Object, Point> create(entries);
+
+    private final RTree<Object, Point> hilbertTreeM10 = RTree.maxChildren(10)
+            .packer(new PackerHilbert()).<Object, Point> create(entries);
+
+    private final RTree<Object, Point> strTreeM32 = RTree.maxChildren(32)
+            .<Object, Point> create(entries);
+
+    private final RTree<Object, Point> hilbertTreeM32 = RTree.maxChildren(32)
+            .packer(new PackerHilbert()).<Object, Point> create(entries);
+
+    private final RTree<Integer, Point> starTreeM10Sum = RTree.maxChildren(10).star()
+            .aggregation(Aggregations.sum()).<Integer, Point> create()
+            .add(withIntegerValues(entries));
+
+    private final FlatRTree<Object, Point> flatStarTreeM10 = starTreeM10.freeze();
+
+    private final FlatRTree<Object, Point> flatStrTreeM10 = strTreeM10.freeze();
+
+    private final PointRTree<Object> pointTreeM10 = PointRTree.create(entries, 10);
+
+    private final PointRTree<Object> pointTreeM32 = PointRTree.create(entries, 32);
+
+    private final SearchCursor<Object, Point> cursor = new SearchCursor<Object, Point>();
+
+    private final LongRTree longTreeM10 = createLongTree(entries, 10);
+
     private final RTree<Object, Rectangle> smallDefaultTreeM4 = RTree.maxChildren(4)
             .<Object, Rectangle> create().add(some);
 
@@ -114,6 +147,130 @@ public class BenchmarksRTree {
         searchGreekWithBackpressure(starTreeM10);
     }
 
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010Quantized() {
+        searchGreek(starTreeM10Quantized);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010QuantizedWithBackpressure() {
+        searchGreekWithBackpressure(starTreeM10Quantized);
+    }
+
+    @Benchmark
+    public void rStarTreeSearchOfGreekDataPointsMaxChildren010WithBackpressureRequest100() {
+        searchWithBackpressure(starTreeM10, GREEK_SEARCH_REGION, 100);
+    }
+
+    @Benchmark
+    public void rStarTreeLargeSearchOfGreekDataPointsMaxChildren010() {
+        starTreeM10.search(GREEK_LARGE_SEARCH_REGION).subscribe();
+    }
+
+    @Benchmark
+    public void rStarTreeLargeSearchOfGreekDataPointsMaxChildren010WithBackpressure() {
+        searchWithBackpressure(starTreeM10, GREEK_LARGE_SEARCH_REGION, 1);
+    }
+
+    @Benchmark
+    public void rStarTreeLargeSearchOfGreekDataPointsMaxChildren010WithBackpressureRequest100() {
+        searchWithBackpressure(starTreeM10, GREEK_LARGE_SEARCH_REGION, 100);
+    }
+
+    @Benchmark
+    public void rStarTreeNearest10OfGreekDataPointsMaxChildren010() {
+        starTreeM10.nearest(GREEK_NEAREST_POINT, 1, 10).subscribe();
+    }
+
+    @Benchmark
+    public void rStarTreeNearest10OfGreekDataPointsMaxChildren010WithoutMaxDistance() {
+        starTreeM10.nearest(GREEK_NEAREST_POINT, 10).subscribe();
+    }
+
+    @Benchmark
+    public void rStarTreeNearestIncrementalTake10OfGreekDataPointsMaxChildren010() {
+        starTreeM10.nearestIncremental(GREEK_NEAREST_POINT).take(10).subscribe();
+    }
+
+    @Benchmark
+    public int rStarTreeSearchOfGreekDataPointsMaxChildren010WithVisitor() {
+        return starTreeM10.search(GREEK_SEARCH_REGION, NO_OP_ENTRY_VISITOR);
+    }
+
+    @Benchmark
+    public int rStarTreeSearchOfGreekDataPointsMaxChildren010WithCursor() {
+        int count = 0;
+        for (Iterator<Entry<Object, Point>> it = starTreeM10.search(GREEK_SEARCH_REGION, cursor); it
+                .hasNext(); it.next())
+            count++;
+        return count;
+    }
+
+    @Benchmark
+    public int rStarTreeCountOfGreekDataPointsInLargeRegionMaxChildren010() {
+        return starTreeM10.count(GREEK_LARGE_SEARCH_REGION);
+    }
+
+    @Benchmark
+    public int rStarTreeSearchCountOfGreekDataPointsInLargeRegionMaxChildren010() {
+        return starTreeM10.search(GREEK_LARGE_SEARCH_REGION).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public double rStarTreeSumOfGreekDataValuesInLargeRegionMaxChildren010() {
+        return starTreeM10Sum.aggregate(GREEK_LARGE_SEARCH_REGION, Aggregations.<Integer> sum());
+    }
+
+    @Benchmark
+    public double rStarTreeSearchSumOfGreekDataValuesInLargeRegionMaxChildren010() {
+        double sum = 0;
+        for (Entry<Integer, Point> entry : starTreeM10Sum.search(GREEK_LARGE_SEARCH_REGION)
+                .toBlocking().toIterable())
+            sum += entry.value();
+        return sum;
+    }
+
+    @Benchmark
+    public int rStarTreeSelfJoinOfGreekDataPointsMaxChildren010() {
+        return starTreeM10.selfJoin(GREEK_SELF_JOIN_DISTANCE).count().toBlocking().single();
+    }
+
+    @Benchmark
+    public int rStarTreeSearchWithinDistanceOfEachGreekDataPointMaxChildren010() {
+        // finds each pair twice and each point with itself
+        int count = 0;
+        for (Entry<Object, Point> entry : entries)
+            count += starTreeM10.search(entry.geometry(), GREEK_SELF_JOIN_DISTANCE).count()
+                    .toBlocking().single();
+        return count;
+    }
+
+    @Benchmark
+    public int rStarTreeNearestJoinOfGreekDataPointsMaxChildren010() {
+        return starTreeM10.nearestJoin(starTreeM10, GREEK_NEAREST_JOIN_COUNT).count()
+                .toBlocking().single();
+    }
+
+    @Benchmark
+    public int rStarTreeNearestToEachGreekDataPointMaxChildren010() {
+        int count = 0;
+        for (Entry<Object, Point> entry : entries)
+            count += starTreeM10.nearest(entry.geometry(), GREEK_NEAREST_JOIN_COUNT).count()
+                    .toBlocking().single();
+        return count;
+    }
+
+    @Benchmark
+    public void rStarTreeBatchSearchOf100RegionsOfGreekDataPointsMaxChildren010() {
+        starTreeM10.search(GREEK_BATCH_SEARCH_REGIONS).subscribe();
+    }
+
+    @Benchmark
+    public void rStarTreeSeparateSearchesOf100RegionsOfGreekDataPointsMaxChildren010() {
+        for (Rectangle r : GREEK_BATCH_SEARCH_REGIONS)
+            starTreeM10.search(r).subscribe();
+    }
+
     @Benchmark
     public void defaultRTreeInsertOneEntryIntoGreekDataEntriesMaxChildren032() {
         insertPoint(defaultTreeM32);
@@ -239,6 +396,84 @@ public class BenchmarksRTree {
         deleteAll(starTreeM10);
     }
 
+    @Benchmark
+    public void strTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(strTreeM10);
+    }
+
+    @Benchmark
+    public void hilbertTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(hilbertTreeM10);
+    }
+
+    @Benchmark
+    public void strTreeSearchOfGreekDataPointsMaxChildren032() {
+        searchGreek(strTreeM32);
+    }
+
+    @Benchmark
+    public void flatRStarTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(flatStarTreeM10);
+    }
+
+    @Benchmark
+    public void flatStrTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(flatStrTreeM10);
+    }
+
+    @Benchmark
+    public void pointTreeSearchOfGreekDataPointsMaxChildren010() {
+        searchGreek(pointTreeM10);
+    }
+
+    @Benchmark
+    public void pointTreeSearchOfGreekDataPointsMaxChildren032() {
+        searchGreek(pointTreeM32);
+    }
+
+    @Benchmark
+    public int longTreeSearchOfGreekDataPointsMaxChildren010() {
+        // should return 22 results
+        return longTreeM10.search(40, 27.0f, 40.5f, 27.5f, NO_OP_VISITOR);
+    }
+
+    @Benchmark
+    public void hilbertTreeSearchOfGreekDataPointsMaxChildren032() {
+        searchGreek(hilbertTreeM32);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> defaultRTreeCreateFromGreekDataMaxChildren010() {
+        return RTree.maxChildren(10).<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeCreateFromGreekDataMaxChildren010() {
+        return RTree.maxChildren(10).star().<Object, Point> create().add(entries);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> defaultRTreeCreateFromGreekDataMaxChildren010Transient() {
+        return RTree.maxChildren(10).<Object, Point> create().asTransient().add(entries)
+                .persistent();
+    }
+
+    @Benchmark
+    public RTree<Object, Point> rStarTreeCreateFromGreekDataMaxChildren010Transient() {
+        return RTree.maxChildren(10).star().<Object, Point> create().asTransient().add(entries)
+                .persistent();
+    }
+
+    @Benchmark
+    public RTree<Object, Point> strTreeCreateFromGreekDataMaxChildren010() {
+        return RTree.maxChildren(10).<Object, Point> create(entries);
+    }
+
+    @Benchmark
+    public RTree<Object, Point> hilbertTreeCreateFromGreekDataMaxChildren010() {
+        return RTree.maxChildren(10).packer(new PackerHilbert()).<Object, Point> create(entries);
+    }
+
     private void deleteAll(RTree<Object, Point> tree) {
         tree.delete(entries.get(1000), true);
     }
@@ -248,18 +483,95 @@ public class BenchmarksRTree {
         tree.search(Geometries.rectangle(500, 500, 630, 630)).subscribe();
     }
 
+    private static List<Entry<Integer, Point>> withIntegerValues(List<Entry<Object, Point>> entries) {
+        List<Entry<Integer, Point>> list = new ArrayList<Entry<Integer, Point>>(entries.size());
+        for (int i = 0; i < entries.size(); i++)
+            list.add(Entry.entry(i, entries.get(i).geometry()));
+        return list;
+    }
+
+    private static List<Rectangle> createGrid(float x, float y, float w, float h, int n) {
+        List<Rectangle> list = new ArrayList<Rectangle>(n * n);
+        for (int i = 0; i < n; i++)
+            for (int j = 0; j < n; j++)
+                list.add(Geometries.rectangle(x + i * w, y + j * h, x + (i + 0.5f) * w, y
+                        + (j + 0.5f) * h));
+        return list;
+    }
+
     private void searchGreek(RTree<Object, Point> tree) {
         // should return 22 results
         tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
     }
 
+    private static final Rectangle GREEK_SEARCH_REGION = Geometries.rectangle(40, 27.0, 40.5,
+            27.5);
+
+    private static final Rectangle GREEK_LARGE_SEARCH_REGION = Geometries.rectangle(38, 22, 39,
+            24);
+
+    private static final Point GREEK_NEAREST_POINT = Geometries.point(38, 24);
+
+    private static final double GREEK_SELF_JOIN_DISTANCE = 0.01;
+
+    private static final int GREEK_NEAREST_JOIN_COUNT = 5;
+
+    // a 10x10 grid of small regions covering GREEK_LARGE_SEARCH_REGION
+    private static final List<Rectangle> GREEK_BATCH_SEARCH_REGIONS = createGrid(38, 22, 0.1f,
+            0.2f, 10);
+
+    private static final RTree.Visitor<Object, Point> NO_OP_ENTRY_VISITOR = new RTree.Visitor<Object, Point>() {
+        @Override
+        public void visit(Entry<Object, Point> entry) {
+            // do nothing
+        }
+    };
+
+    private static final LongRTree.Visitor NO_OP_VISITOR = new LongRTree.Visitor() {
+        @Override
+        public void visit(long id, float x1, float y1, float x2, float y2) {
+            // do nothing
+        }
+    };
+
+    private static LongRTree createLongTree(List<Entry<Object, Point>> entries, int maxChildren) {
+        long[] ids = new long[entries.size()];
+        float[] mbrs = new float[4 * entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+            Point p = entries.get(i).geometry();
+            mbrs[4 * i] = p.x();
+            mbrs[4 * i + 1] = p.y();
+            mbrs[4 * i + 2] = p.x();
+            mbrs[4 * i + 3] = p.y();
+        }
+        return LongRTree.create(ids, mbrs, maxChildren);
+    }
+
+    private void searchGreek(FlatRTree<Object, Point> tree) {
+        // should return 22 results
+        tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
+    }
+
+    private void searchGreek(PointRTree<Object> tree) {
+        // should return 22 results
+        tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe();
+    }
+
     private void searchGreekWithBackpressure(RTree<Object, Point> tree) {
         // should return 22 results
-        tree.search(Geometries.rectangle(40, 27.0, 40.5, 27.5)).subscribe(new Subscriber<Object>() {
+        searchWithBackpressure(tree, GREEK_SEARCH_REGION, 1);
+    }
+
+    private static void searchWithBackpressure(RTree<Object, Point> tree, Rectangle r,
+            final int batchSize) {
+        tree.search(r).subscribe(new Subscriber<Object>() {
+
+            int count = 0;
 
             @Override
             public void onStart() {
-                request(1);
+                request(batchSize);
             }
 
             @Override
@@ -274,7 +586,10 @@ public class BenchmarksRTree {
 
             @Override
             public void onNext(Object arg0) {
-                request(1);
+                if (++count == batchSize) {
+                    count = 0;
+                    request(batchSize);
+                }
             }
         });
     }
@@ -0,0 +1,163 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class ConcurrentRTreeTest {
+
+    @Test
+    public void testAddAndDeleteAreVisibleInReturnedSnapshot() {
+        ConcurrentRTree<Object, Geometry> c = ConcurrentRTree.create(RTree.maxChildren(4)
+                .<Object, Geometry> create());
+        Entry<Object, Geometry> entry = Entry.<Object, Geometry> entry(1, point(1, 2));
+        RTree<Object, Geometry> tree = c.add(entry);
+        assertEquals(1, tree.size());
+        assertTrue(c.tree() == tree);
+        RTree<Object, Geometry> tree2 = c.delete(entry);
+        assertTrue(tree2.isEmpty());
+        // earlier snapshots are unaffected
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    public void testConcurrentWritersAllCommitted() throws Exception {
+        final ConcurrentRTree<Object, Geometry> c = ConcurrentRTree.create(RTree.maxChildren(4)
+                .<Object, Geometry> create());
+        final int threads = 8;
+        final int perThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < threads; i++) {
+                final List<Entry<Object, Geometry>> entries = RTreeTest
+                        .createRandomEntries(perThread);
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        start.await();
+                        for (Entry<Object, Geometry> entry : entries) {
+                            RTree<Object, Geometry> tree = c.add(entry);
+                            assertTrue(tree.search(entry.geometry().mbr()).toList()
+                                    .toBlocking().single().contains(entry));
+                        }
+                        // delete every second entry
+                        for (int j = 0; j < entries.size(); j += 2)
+                            c.delete(entries.get(j));
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Object> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads * perThread / 2, c.tree().size());
+        assertEquals(threads * perThread / 2, (int) c.tree().entries().count().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testFailedAddIsThrownAndLeavesTreeUnchanged() {
+        ConcurrentRTree<Object, Geometry> c = ConcurrentRTree.create(RTree.maxChildren(4)
+                .<Object, Geometry> create());
+        c.add(1, point(1, 2));
+        try {
+            c.add(2, new BadGeometry());
+            fail();
+        } catch (BadGeometryError e) {
+            // expected
+        }
+        assertEquals(1, c.tree().size());
+        assertEquals(2, c.add(3, point(3, 4)).size());
+    }
+
+    @Test
+    public void testFailingWritersDoNotFailOrLoseOtherWritersChanges() throws Exception {
+        final ConcurrentRTree<Object, Geometry> c = ConcurrentRTree.create(RTree.maxChildren(4)
+                .<Object, Geometry> create());
+        final int threads = 8;
+        final int perThread = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> futures = new ArrayList<Future<Object>>();
+            for (int i = 0; i < threads; i++) {
+                final boolean bad = i % 2 == 0;
+                final List<Entry<Object, Geometry>> entries = RTreeTest
+                        .createRandomEntries(perThread);
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        start.await();
+                        for (Entry<Object, Geometry> entry : entries) {
+                            if (bad)
+                                try {
+                                    c.add(entry.value(), new BadGeometry());
+                                } catch (BadGeometryError e) {
+                                    failures.incrementAndGet();
+                                }
+                            RTree<Object, Geometry> tree = c.add(entry);
+                            assertTrue(tree.search(entry.geometry().mbr()).toList()
+                                    .toBlocking().single().contains(entry));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Object> future : futures)
+                future.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads / 2 * perThread, failures.get());
+        assertEquals(threads * perThread, c.tree().size());
+    }
+
+    private static final class BadGeometryError extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Fails with an {@link Error} whenever it is added to a tree.
+     */
+    private static final class BadGeometry implements Geometry {
+
+        @Override
+        public double distance(Rectangle r) {
+            throw new BadGeometryError();
+        }
+
+        @Override
+        public Rectangle mbr() {
+            throw new BadGeometryError();
+        }
+
+        @Override
+        public boolean intersects(Rectangle r) {
+            throw new BadGeometryError();
+        }
+    }
+
+}
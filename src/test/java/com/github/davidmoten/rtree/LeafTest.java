@@ -1,13 +1,18 @@
 package com.github.davidmoten.rtree;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 
 import org.junit.Test;
 
+import rx.Observable;
+
 import com.github.davidmoten.rtree.geometry.Geometries;
+import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.Rectangle;
 
 public class LeafTest {
@@ -15,6 +20,9 @@ public class LeafTest {
     private static Context context = new Context(2, 4, new SelectorMinimalAreaIncrease(),
             new SplitterQuadratic());
 
+    private static Context contextWithEntryMbrs = new Context(2, 4,
+            new SelectorMinimalAreaIncrease(), new SplitterQuadratic(), false, true, null);
+
     @Test(expected = IllegalArgumentException.class)
     public void testCannotHaveZeroChildren() {
         new Leaf<Object, Rectangle>(new ArrayList<Entry<Object, Rectangle>>(), context);
@@ -29,4 +37,59 @@ public class LeafTest {
                 Entry.entry(new Object(), r2)), context).geometry().mbr();
         assertEquals(r1.add(r2), r);
     }
+
+    @Test
+    public void testBoundsConditionIsRefinedByExactCondition() {
+        // the circle's mbr intersects the rectangle but the circle does not
+        Entry<Object, Geometry> circle = Entry.<Object, Geometry> entry(1,
+                Geometries.circle(0, 0, 1));
+        Entry<Object, Geometry> point = Entry.<Object, Geometry> entry(2, Geometries.point(1, 1));
+        for (Context c : Arrays.asList(context, contextWithEntryMbrs)) {
+            Leaf<Object, Geometry> leaf = new Leaf<Object, Geometry>(
+                    Arrays.asList(circle, point), c);
+            Rectangle r = Geometries.rectangle(0.9, 0.9, 2, 2);
+            assertFalse(leaf.matches(0, RTree.intersects(r)));
+            assertTrue(leaf.matches(1, RTree.intersects(r)));
+            assertFalse(leaf.intersects(0, r));
+            assertTrue(leaf.intersects(1, r));
+            assertEquals(Arrays.asList(point), Observable.create(
+                    new OnSubscribeSearch<Object, Geometry>(leaf, RTree.intersects(r))).toList()
+                    .toBlocking().single());
+        }
+    }
+
+    @Test
+    public void testBoundsConditionRejectsWithoutExactCondition() {
+        Entry<Object, Geometry> point = Entry.<Object, Geometry> entry(2, Geometries.point(1, 1));
+        Leaf<Object, Geometry> leaf = new Leaf<Object, Geometry>(Arrays.asList(point),
+                contextWithEntryMbrs);
+        assertFalse(leaf.matches(0, RTree.intersects(Geometries.rectangle(2, 2, 3, 3))));
+        assertTrue(leaf.matches(0, RTree.intersects(Geometries.rectangle(1, 1, 3, 3))));
+    }
+
+    @Test
+    public void testEntryMbrsAreOnlyStoredIfEnabled() {
+        Entry<Object, Geometry> point = Entry.<Object, Geometry> entry(2, Geometries.point(1, 2));
+        Leaf<Object, Geometry> leaf = new Leaf<Object, Geometry>(Arrays.asList(point), context);
+        Leaf<Object, Geometry> leaf2 = new Leaf<Object, Geometry>(Arrays.asList(point),
+                contextWithEntryMbrs);
+        // built on demand so a new array each time
+        assertTrue(leaf.mbrs() != leaf.mbrs());
+        assertTrue(leaf2.mbrs() == leaf2.mbrs());
+        assertTrue(Arrays.equals(new float[] { 1, 2, 1, 2 }, leaf.mbrs()));
+        assertTrue(Arrays.equals(new float[] { 1, 2, 1, 2 }, leaf2.mbrs()));
+    }
+
+    @Test
+    public void testLeafMbrsBuildsEachArrayOnce() {
+        Entry<Object, Geometry> point = Entry.<Object, Geometry> entry(2, Geometries.point(1, 2));
+        Leaf<Object, Geometry> leaf = new Leaf<Object, Geometry>(Arrays.asList(point), context);
+        Leaf<Object, Geometry> leaf2 = new Leaf<Object, Geometry>(Arrays.asList(point),
+                contextWithEntryMbrs);
+        LeafMbrs mbrs = new LeafMbrs();
+        assertTrue(mbrs.of(leaf) == mbrs.of(leaf));
+        assertTrue(Arrays.equals(new float[] { 1, 2, 1, 2 }, mbrs.of(leaf)));
+        // a leaf that stores its array gives its own
+        assertTrue(mbrs.of(leaf2) == leaf2.mbrs());
+    }
 }
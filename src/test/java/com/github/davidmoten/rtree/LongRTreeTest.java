@@ -0,0 +1,140 @@
+package com.github.davidmoten.rtree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Geometries;
+
+public class LongRTreeTest {
+
+    private static final int N = 2000;
+
+    @Test
+    public void testBulkLoadedSearchMatchesBruteForce() {
+        float[] mbrs = randomMbrs(N);
+        LongRTree tree = LongRTree.create(ids(N), mbrs, 8);
+        assertEquals(N, tree.size());
+        checkSearches(tree, mbrs, N);
+    }
+
+    @Test
+    public void testAddedSearchMatchesBruteForce() {
+        float[] mbrs = randomMbrs(N);
+        LongRTree tree = LongRTree.create(4);
+        for (int i = 0; i < N; i++)
+            tree = tree.add(i, mbrs[4 * i], mbrs[4 * i + 1], mbrs[4 * i + 2], mbrs[4 * i + 3]);
+        assertEquals(N, tree.size());
+        checkSearches(tree, mbrs, N);
+    }
+
+    @Test
+    public void testDelete() {
+        float[] mbrs = randomMbrs(N);
+        LongRTree tree = LongRTree.create(ids(N), mbrs, 4);
+        LongRTree original = tree;
+        // deleting with the wrong id or rectangle has no effect
+        assertSame(tree, tree.delete(N, mbrs[0], mbrs[1], mbrs[2], mbrs[3]));
+        assertSame(tree, tree.delete(0, mbrs[0], mbrs[1], mbrs[2], mbrs[3] + 1));
+        for (int i = 0; i < N; i += 2)
+            tree = tree.delete(i, mbrs[4 * i], mbrs[4 * i + 1], mbrs[4 * i + 2], mbrs[4 * i + 3]);
+        assertEquals(N / 2, tree.size());
+        Set<Long> found = collect(tree, -Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE,
+                Float.MAX_VALUE);
+        assertEquals(N / 2, found.size());
+        for (long id : found)
+            assertTrue(id % 2 == 1);
+        assertEquals(N, original.size());
+        for (int i = 1; i < N; i += 2)
+            tree = tree.delete(i, Geometries.rectangle(mbrs[4 * i], mbrs[4 * i + 1],
+                    mbrs[4 * i + 2], mbrs[4 * i + 3]));
+        assertTrue(tree.isEmpty());
+        assertEquals(0, collect(tree, 0, 0, 1000, 1000).size());
+        tree = tree.add(1, Geometries.rectangle(1, 2, 3, 4));
+        assertEquals(1, collect(tree, 0, 0, 1000, 1000).size());
+    }
+
+    @Test
+    public void testVisitorReceivesRectangle() {
+        LongRTree tree = LongRTree.create(4).add(Long.MAX_VALUE, 1, 2, 3, 4);
+        final float[] found = new float[4];
+        final long[] id = new long[1];
+        assertEquals(1, tree.entries(new LongRTree.Visitor() {
+            @Override
+            public void visit(long i, float x1, float y1, float x2, float y2) {
+                id[0] = i;
+                found[0] = x1;
+                found[1] = y1;
+                found[2] = x2;
+                found[3] = y2;
+            }
+        }));
+        assertEquals(Long.MAX_VALUE, id[0]);
+        assertEquals(1, found[0], 0);
+        assertEquals(2, found[1], 0);
+        assertEquals(3, found[2], 0);
+        assertEquals(4, found[3], 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMbrsOfWrongLengthThrows() {
+        LongRTree.create(new long[] { 1 }, new float[] { 1, 2, 3 }, 4);
+    }
+
+    private static void checkSearches(LongRTree tree, float[] mbrs, int n) {
+        Random random = new Random(2);
+        for (int k = 0; k < 50; k++) {
+            float x1 = random.nextFloat() * 1000;
+            float y1 = random.nextFloat() * 1000;
+            float x2 = x1 + random.nextFloat() * 100;
+            float y2 = y1 + random.nextFloat() * 100;
+            Set<Long> expected = new HashSet<Long>();
+            for (int i = 0; i < n; i++)
+                if (Geometries.rectangle(x1, y1, x2, y2).intersects(
+                        Geometries.rectangle(mbrs[4 * i], mbrs[4 * i + 1], mbrs[4 * i + 2],
+                                mbrs[4 * i + 3])))
+                    expected.add((long) i);
+            assertEquals(expected, collect(tree, x1, y1, x2, y2));
+        }
+    }
+
+    private static Set<Long> collect(LongRTree tree, float x1, float y1, float x2, float y2) {
+        final Set<Long> found = new HashSet<Long>();
+        int count = tree.search(x1, y1, x2, y2, new LongRTree.Visitor() {
+            @Override
+            public void visit(long id, float x1, float y1, float x2, float y2) {
+                found.add(id);
+            }
+        });
+        assertEquals(found.size(), count);
+        return found;
+    }
+
+    private static long[] ids(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++)
+            ids[i] = i;
+        return ids;
+    }
+
+    private static float[] randomMbrs(int n) {
+        Random random = new Random(1);
+        float[] mbrs = new float[4 * n];
+        for (int i = 0; i < n; i++) {
+            float x = random.nextFloat() * 1000;
+            float y = random.nextFloat() * 1000;
+            mbrs[4 * i] = x;
+            mbrs[4 * i + 1] = y;
+            mbrs[4 * i + 2] = x + random.nextFloat() * 10;
+            mbrs[4 * i + 3] = y + random.nextFloat() * 10;
+        }
+        return mbrs;
+    }
+
+}
@@ -1,10 +1,17 @@
 package com.github.davidmoten.rtree;
 
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 
+import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
 
 public class NonLeafTest {
 
@@ -13,4 +20,33 @@ public class NonLeafTest {
         new NonLeaf<Object,Geometry>(Collections.<Node<Object,Geometry>>emptyList(), null);
     }
     
+    @Test
+    public void testQuantizedChildMbrsContainExactChildMbrs() {
+        Context context = new Context(1, 4, new SelectorMinimalAreaIncrease(),
+                new SplitterQuadratic(), true, false, null);
+        List<Node<Object, Rectangle>> children = new ArrayList<Node<Object, Rectangle>>();
+        children.add(leaf(context, -1000, -1000, -999.9f, -999.9f));
+        children.add(leaf(context, 0.1f, 0.2f, 0.3f, 0.4f));
+        children.add(leaf(context, 123.456f, 17.3f, 123.457f, 17.31f));
+        children.add(leaf(context, 999.99f, 999.99f, 1000, 1000));
+        NonLeaf<Object, Rectangle> node = new NonLeaf<Object, Rectangle>(children, context);
+        for (int i = 0; i < children.size(); i++) {
+            Rectangle r = children.get(i).geometry().mbr();
+            assertTrue(node.childMatches(i, RTree.intersects(Geometries.rectangle(r.x1(), r.y1(),
+                    r.x1(), r.y1()))));
+            assertTrue(node.childMatches(i, RTree.intersects(Geometries.rectangle(r.x2(), r.y2(),
+                    r.x2(), r.y2()))));
+        }
+        // a quantum is about 0.03 so a small gap still prunes the child
+        assertFalse(node.childMatches(1, RTree.intersects(Geometries.rectangle(0.5, 0.5, 1, 1))));
+        assertFalse(node.childMatches(2,
+                RTree.intersects(Geometries.rectangle(123.5, 17.3, 124, 17.31))));
+    }
+
+    private static Node<Object, Rectangle> leaf(Context context, float x1, float y1, float x2,
+            float y2) {
+        return new Leaf<Object, Rectangle>(Collections.singletonList(Entry.<Object, Rectangle> entry(
+                1, Geometries.rectangle(x1, y1, x2, y2))), context);
+    }
+
 }
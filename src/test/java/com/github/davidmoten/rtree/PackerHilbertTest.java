@@ -0,0 +1,62 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class PackerHilbertTest {
+
+    private static final int HALF = 1 << 15;
+
+    @Test
+    public void testIndexVisitsQuadrantsInHilbertOrder() {
+        assertEquals(0, PackerHilbert.index(0, 0) >> 30);
+        assertEquals(1, PackerHilbert.index(0, HALF) >> 30);
+        assertEquals(2, PackerHilbert.index(HALF, HALF) >> 30);
+        assertEquals(3, PackerHilbert.index(HALF, 0) >> 30);
+    }
+
+    @Test
+    public void testIndexIsContinuous() {
+        // consecutive indexes on the curve are adjacent cells
+        assertEquals(1, PackerHilbert.index(1, 0) - PackerHilbert.index(0, 0));
+        assertEquals(1, PackerHilbert.index(1, 1) - PackerHilbert.index(1, 0));
+        assertEquals(1, PackerHilbert.index(0, 1) - PackerHilbert.index(1, 1));
+    }
+
+    @Test
+    public void testPackOfEmptyList() {
+        assertTrue(new PackerHilbert().pack(new ArrayList<Rectangle>(), 4).isEmpty());
+    }
+
+    @Test
+    public void testPackGroupsNeighbours() {
+        List<Rectangle> list = Arrays.asList(point(0, 0), point(10, 10), point(0, 10),
+                point(10, 0), point(0, 1), point(10, 11), point(1, 10), point(11, 0));
+        List<List<Rectangle>> groups = new PackerHilbert().pack(list, 2);
+        assertEquals(4, groups.size());
+        assertEquals(Arrays.asList(point(0, 0), point(0, 1)), groups.get(0));
+        assertEquals(Arrays.asList(point(0, 10), point(1, 10)), groups.get(1));
+        assertEquals(Arrays.asList(point(10, 10), point(10, 11)), groups.get(2));
+        assertEquals(Arrays.asList(point(10, 0), point(11, 0)), groups.get(3));
+    }
+
+    @Test
+    public void testPackOfIdenticalItems() {
+        List<Rectangle> list = Arrays.asList(point(1, 1), point(1, 1), point(1, 1));
+        assertEquals(2, new PackerHilbert().pack(list, 2).size());
+    }
+
+    private static Rectangle point(double x, double y) {
+        return rectangle(x, y, x, y);
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class PackerStrTest {
+
+    private static Rectangle point(double x, double y) {
+        return rectangle(x, y, x, y);
+    }
+
+    @Test
+    public void testPackGrid() {
+        List<Rectangle> points = new ArrayList<Rectangle>();
+        for (int x = 0; x < 4; x++)
+            for (int y = 0; y < 4; y++)
+                points.add(point(x, y));
+        List<List<Rectangle>> groups = new PackerStr().pack(points, 4);
+        assertEquals(4, groups.size());
+        // the 2 vertical slices are 0<=x<=1 and 2<=x<=3 and each is cut into
+        // 2 groups by y
+        assertEquals(Arrays.asList(point(0, 0), point(1, 0), point(0, 1), point(1, 1)), groups
+                .get(0).subList(0, 4));
+        for (List<Rectangle> group : groups)
+            assertEquals(1, Util.mbr(group).area(), 0.00001);
+    }
+
+    @Test
+    public void testPackDoesNotExceedMaxSize() {
+        List<Rectangle> points = new ArrayList<Rectangle>();
+        for (int i = 0; i < 1001; i++)
+            points.add(point(Math.random(), Math.random()));
+        List<List<Rectangle>> groups = new PackerStr().pack(points, 10);
+        int count = 0;
+        for (List<Rectangle> group : groups) {
+            assertTrue(group.size() <= 10);
+            count += group.size();
+        }
+        assertEquals(1001, count);
+        assertEquals(101, groups.size());
+    }
+
+}
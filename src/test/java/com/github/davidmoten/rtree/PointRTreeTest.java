@@ -0,0 +1,117 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.point;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import rx.Observable;
+import rx.functions.Func1;
+
+import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class PointRTreeTest {
+
+    private static final List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+
+    @Test
+    public void testEmptyTree() {
+        PointRTree<Object> tree = PointRTree.create(new ArrayList<Entry<Object, Point>>());
+        assertTrue(tree.isEmpty());
+        assertEquals(0, (int) tree.search(rectangle(0, 0, 1, 1)).count().toBlocking().single());
+        assertEquals(0, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchReturnsSameResultsAsRTree() {
+        PointRTree<Object> tree = PointRTree.create(entries);
+        RTree<Object, Point> rtree = RTree.maxChildren(10).create(entries);
+        assertEquals(entries.size(), tree.size());
+        assertEquals(entries.size(), (int) tree.entries().count().toBlocking().single());
+        for (Rectangle r : Arrays.asList(rectangle(40, 27.0, 40.5, 27.5),
+                rectangle(35, 20, 39, 24), rectangle(0, 0, 1, 1))) {
+            assertEquals(set(rtree.search(r)), set(tree.search(r)));
+        }
+        Point p = point(38, 25);
+        assertEquals(set(rtree.search(p, 0.5)), set(tree.search(p, 0.5)));
+    }
+
+    @Test
+    public void testNearestReturnsSameDistancesAsRTree() {
+        PointRTree<Object> tree = PointRTree.create(entries);
+        RTree<Object, Point> rtree = RTree.maxChildren(10).create(entries);
+        Point p = point(38.04, 25.01);
+        assertEquals(distances(p, rtree.nearest(p, 1, 20)), distances(p, tree.nearest(p, 1, 20)));
+        assertEquals(distances(p, rtree.nearest(p, 20)), distances(p, tree.nearest(p, 20)));
+        assertEquals(distances(p, rtree.nearest(p, 0.01, 20)),
+                distances(p, tree.nearest(p, 0.01, 20)));
+    }
+
+    @Test
+    public void testNearestOfEmptyTreeIsEmpty() {
+        PointRTree<Object> tree = PointRTree.create(new ArrayList<Entry<Object, Point>>());
+        assertTrue(tree.nearest(point(1, 1), 5).isEmpty().toBlocking().single());
+    }
+
+    @Test
+    public void testCreateFromArrays() {
+        PointRTree<Integer> tree = PointRTree.create(Arrays.asList(1, 2, 3), new float[] { 1, 2,
+                3 }, new float[] { -1, -2, -3 }, 2);
+        assertEquals(Arrays.asList(Entry.entry(2, point(2, -2))), tree.search(point(2, -2), 0.1)
+                .toList().toBlocking().single());
+        assertEquals(3, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testSearchSupportsBackpressure() {
+        PointRTree<Object> tree = PointRTree.create(entries);
+        assertEquals(3, (int) tree.entries().take(3).count().toBlocking().single());
+        assertEquals(entries.size(), (int) tree.entries().onBackpressureBuffer().count()
+                .toBlocking().single());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArraysOfDifferentLengthsThrows() {
+        PointRTree.create(Arrays.asList(1, 2), new float[] { 1, 2 }, new float[] { 1 }, 4);
+    }
+
+    @Test
+    public void testIndexPackerGroupsAllIndexes() {
+        float[] xs = new float[1000];
+        float[] ys = new float[1000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = (float) (Math.random() * 200 - 100);
+            ys[i] = (float) (Math.random() * 200 - 100);
+        }
+        int[][] groups = IndexPacker.pack(xs, ys, 7);
+        HashSet<Integer> indexes = new HashSet<Integer>();
+        for (int[] group : groups) {
+            assertTrue(group.length > 0 && group.length <= 7);
+            for (int i : group)
+                indexes.add(i);
+        }
+        assertEquals(1000, indexes.size());
+    }
+
+    private static <T> HashSet<Entry<T, Point>> set(Observable<Entry<T, Point>> entries) {
+        return new HashSet<Entry<T, Point>>(entries.toList().toBlocking().single());
+    }
+
+    private static <T> List<Double> distances(final Point p, Observable<Entry<T, Point>> entries) {
+        return entries.map(new Func1<Entry<T, Point>, Double>() {
+            @Override
+            public Double call(Entry<T, Point> entry) {
+                return entry.geometry().distance(p);
+            }
+        }).toList().toBlocking().single();
+    }
+
+}
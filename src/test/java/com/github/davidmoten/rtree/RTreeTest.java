@@ -20,10 +20,16 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
@@ -31,13 +37,18 @@ import rx.Observable;
 import rx.Subscriber;
 import rx.functions.Func1;
 import rx.functions.Func2;
+import rx.schedulers.Schedulers;
 
 import com.github.davidmoten.rtree.geometry.Circle;
 import com.github.davidmoten.rtree.geometry.Geometries;
 import com.github.davidmoten.rtree.geometry.Geometry;
 import com.github.davidmoten.rtree.geometry.HasGeometry;
+import com.github.davidmoten.rtree.geometry.Intersects;
 import com.github.davidmoten.rtree.geometry.Point;
+import com.github.davidmoten.rtree.geometry.PointDouble;
 import com.github.davidmoten.rtree.geometry.Rectangle;
+import com.github.davidmoten.rtree.geometry.RectangleDouble;
+import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
@@ -390,9 +401,8 @@ public class RTreeTest {
         }
     }
 
-    private static <T extends Geometry> Subscriber<Entry<Object, T>> createBackpressureSubscriber(
-            final Collection<Entry<Object, T>> collection) {
-        return new Subscriber<Entry<Object, T>>() {
+    private static <T> Subscriber<T> createBackpressureSubscriber(final Collection<T> collection) {
+        return new Subscriber<T>() {
 
             @Override
             public void onStart() {
@@ -408,7 +418,7 @@ public class RTreeTest {
             }
 
             @Override
-            public void onNext(Entry<Object, T> t) {
+            public void onNext(T t) {
                 collection.add(t);
                 request(1);
             }
@@ -482,6 +492,109 @@ public class RTreeTest {
         assertEquals(point(4, 4), list.get(3).geometry());
     }
 
+    @Test
+    public void testNearestMatchesBruteForce() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(1000);
+        for (RTree<Object, Geometry> tree : Arrays.asList(RTree.maxChildren(4)
+                .<Object, Geometry> create().add(entries),
+                RTree.star().maxChildren(10).<Object, Geometry> create(entries))) {
+            for (Rectangle r : Arrays.asList(rectangle(500, 500, 500, 500),
+                    rectangle(-100, -100, -50, -50), rectangle(100, 200, 300, 250))) {
+                List<Double> expected = new ArrayList<Double>();
+                for (Entry<Object, Geometry> entry : entries)
+                    expected.add(entry.geometry().distance(r));
+                Collections.sort(expected);
+                assertEquals(expected.subList(0, 15), distances(r, tree.nearest(r, 15)));
+                List<Double> within = new ArrayList<Double>();
+                for (double d : expected)
+                    if (d < 30 && within.size() < 15)
+                        within.add(d);
+                assertEquals(within, distances(r, tree.nearest(r, 30, 15)));
+            }
+        }
+    }
+
+    @Test
+    public void testNearestWithoutMaxDistanceReturnsAllEntriesWhenMaxCountIsLarge() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                createRandomEntries(100));
+        assertEquals(100, (int) tree.nearest(point(0, 0), 1000).count().toBlocking().single());
+        assertEquals(0, (int) tree.nearest(point(0, 0), 0).count().toBlocking().single());
+        assertEquals(0, (int) RTree.create().nearest(point(0, 0), 10).count().toBlocking()
+                .single());
+    }
+
+    @Test
+    public void testNearestSupportsBackpressure() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                createRandomEntries(100));
+        List<Entry<Object, Geometry>> found = new ArrayList<Entry<Object, Geometry>>();
+        tree.nearest(point(0, 0), 1000).subscribe(createBackpressureSubscriber(found));
+        assertEquals(tree.nearest(point(0, 0), 1000).toList().toBlocking().single(), found);
+    }
+
+    @Test
+    public void testNearestIncrementalReturnsAllEntriesInOrderOfDistance() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(500);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                entries);
+        Rectangle r = rectangle(300, 300, 310, 320);
+        List<Double> expected = new ArrayList<Double>();
+        for (Entry<Object, Geometry> entry : entries)
+            expected.add(entry.geometry().distance(r));
+        Collections.sort(expected);
+        assertEquals(expected, distances(r, tree.nearestIncremental(r)));
+        assertEquals(distances(r, tree.nearest(r, 7)), distances(r, tree.nearestIncremental(r)
+                .take(7)));
+        assertEquals(0, (int) RTree.create().nearestIncremental(point(1, 1)).count()
+                .toBlocking().single());
+    }
+
+    @Test
+    public void testNearestIncrementalEmitsOnlyWhatIsRequested() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                createRandomEntries(500));
+        final List<Entry<Object, Geometry>> found = new ArrayList<Entry<Object, Geometry>>();
+        final AtomicBoolean completed = new AtomicBoolean();
+        tree.nearestIncremental(point(0, 0)).subscribe(new Subscriber<Entry<Object, Geometry>>() {
+
+            @Override
+            public void onStart() {
+                request(3);
+            }
+
+            @Override
+            public void onCompleted() {
+                completed.set(true);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+            }
+
+            @Override
+            public void onNext(Entry<Object, Geometry> entry) {
+                found.add(entry);
+            }
+        });
+        assertEquals(3, found.size());
+        assertFalse(completed.get());
+        List<Entry<Object, Geometry>> found2 = new ArrayList<Entry<Object, Geometry>>();
+        tree.nearestIncremental(point(0, 0)).subscribe(createBackpressureSubscriber(found2));
+        assertEquals(500, found2.size());
+        assertEquals(found, found2.subList(0, 3));
+    }
+
+    private static List<Double> distances(final Rectangle r,
+            Observable<Entry<Object, Geometry>> entries) {
+        return entries.map(new Func1<Entry<Object, Geometry>, Double>() {
+            @Override
+            public Double call(Entry<Object, Geometry> entry) {
+                return entry.geometry().distance(r);
+            }
+        }).toList().toBlocking().single();
+    }
+
     @Test
     public void testNearestHonoursUnsubscribeJustBeforeCompletion() {
         Object value = new Object();
@@ -779,6 +892,64 @@ public class RTreeTest {
         assertEquals(0, (int) entries.count().toBlocking().single());
     }
 
+    @Test
+    public void testSearchCircleReturnsSameResultsAsBruteForce() {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 2000; i++)
+            entries.add(Entry.entry(i, point(Math.random() * 1000, Math.random() * 1000)));
+        List<RTree<Integer, Point>> trees = asList(
+                RTree.maxChildren(4).<Integer, Point> create().add(entries),
+                RTree.star().maxChildren(10).quantizeChildMbrs().<Integer, Point> create()
+                        .add(entries));
+        for (int i = 0; i < 20; i++) {
+            Circle c = circle(Math.random() * 1000, Math.random() * 1000, Math.random() * 200);
+            Set<Entry<Integer, Point>> expected = new HashSet<Entry<Integer, Point>>();
+            for (Entry<Integer, Point> entry : entries)
+                if (c.intersects(entry.geometry().mbr()))
+                    expected.add(entry);
+            for (RTree<Integer, Point> tree : trees) {
+                List<Entry<Integer, Point>> list = tree.search(c).toList().toBlocking().single();
+                assertEquals(expected.size(), list.size());
+                assertEquals(expected, new HashSet<Entry<Integer, Point>>(list));
+            }
+        }
+    }
+
+    @Test
+    public void testSearchCircleVisitsFewerNodesThanSearchOfItsMbr() {
+        RTree<Object, Point> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 100; i++)
+            for (int j = 0; j < 100; j++)
+                tree = tree.add(i * 100 + j, point(i, j));
+        Circle c = circle(50, 50, 30);
+        final AtomicInteger circleNodes = new AtomicInteger();
+        final AtomicInteger mbrNodes = new AtomicInteger();
+        int count = tree.search(countingNodes(new RTree.CircleCondition(c), circleNodes)).count()
+                .toBlocking().single();
+        tree.search(countingNodes(RTree.intersects(c.mbr()), mbrNodes)).subscribe();
+        assertEquals(count, (int) tree.search(c).count().toBlocking().single());
+        assertEquals(count, (int) tree.search(c, pointIntersectsCircle).count().toBlocking()
+                .single());
+        assertTrue(circleNodes.get() < mbrNodes.get());
+    }
+
+    /**
+     * Counts the nodes (mbrs that are rectangles in a tree of points) that
+     * satisfy the condition.
+     */
+    private static Func1<Geometry, Boolean> countingNodes(
+            final Func1<Geometry, Boolean> condition, final AtomicInteger count) {
+        return new Func1<Geometry, Boolean>() {
+            @Override
+            public Boolean call(Geometry g) {
+                final boolean result = condition.call(g);
+                if (result && g instanceof Rectangle)
+                    count.incrementAndGet();
+                return result;
+            }
+        };
+    }
+
     @Test
     public void testSearchWithDistanceFunctionIntersectsMbrButNotActualGeometry() {
         RTree<Integer, Point> tree = RTree.<Integer, Point> create().add(1, point(0, 0))
@@ -834,6 +1005,700 @@ public class RTreeTest {
         }
     }
 
+    @Test
+    public void testBulkLoadEmptyList() {
+        RTree<Object, Geometry> tree = RTree.create(new ArrayList<Entry<Object, Geometry>>());
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.calculateDepth());
+    }
+
+    @Test
+    public void testBulkLoadReturnsSameSearchResultsAsIncrementalTree() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.maxChildren(10).<Object, Point> create(entries);
+        RTree<Object, Point> tree2 = RTree.maxChildren(10).<Object, Point> create().add(entries);
+        assertEquals(entries.size(), tree.size());
+        assertEquals(entries.size(), (int) tree.entries().count().toBlocking().single());
+        Rectangle r = Geometries.rectangle(40, 27.0, 40.5, 27.5);
+        assertEquals(new HashSet<Entry<Object, Point>>(tree2.search(r).toList().toBlocking()
+                .single()), new HashSet<Entry<Object, Point>>(tree.search(r).toList()
+                .toBlocking().single()));
+    }
+
+    @Test
+    public void testHilbertBulkLoadReturnsSameSearchResultsAsIncrementalTree() {
+        List<Entry<Object, Point>> entries = GreekEarthquakes.entriesList();
+        RTree<Object, Point> tree = RTree.maxChildren(10).packer(new PackerHilbert())
+                .<Object, Point> create(entries);
+        RTree<Object, Point> tree2 = RTree.maxChildren(10).<Object, Point> create().add(entries);
+        Rectangle r = Geometries.rectangle(40, 27.0, 40.5, 27.5);
+        assertEquals(new HashSet<Entry<Object, Point>>(tree2.search(r).toList().toBlocking()
+                .single()), new HashSet<Entry<Object, Point>>(tree.search(r).toList()
+                .toBlocking().single()));
+        // compare geometries only because the data has duplicate points that
+        // may be returned in either order
+        assertEquals(geometries(tree2.nearest(point(38, 25), 1, 5)),
+                geometries(tree.nearest(point(38, 25), 1, 5)));
+        checkNodeSizes(tree.root().get(), tree.context());
+    }
+
+    @Test
+    public void testParallelBulkLoadReturnsSameSearchResultsAsSequentialBulkLoad() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(10000);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create(entries);
+        for (int threads = 2; threads <= 5; threads++) {
+            RTree<Object, Geometry> tree2 = RTree.maxChildren(4).bulkLoadThreads(threads)
+                    .create(entries);
+            assertEquals(entries.size(), tree2.size());
+            checkNodeSizes(tree2.root().get(), tree2.context());
+            Rectangle r = rectangle(100, 200, 400, 300);
+            assertEquals(new HashSet<Entry<Object, Geometry>>(tree.search(r).toList()
+                    .toBlocking().single()), new HashSet<Entry<Object, Geometry>>(tree2
+                    .search(r).toList().toBlocking().single()));
+            assertEquals(entries.size(), (int) tree2.entries().count().toBlocking().single());
+        }
+    }
+
+    @Test
+    public void testParallelHilbertBulkLoadBuildsSameTreeAsSequentialBulkLoad() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(10000);
+        // duplicates have equal Hilbert indexes
+        entries.addAll(entries.subList(0, 100));
+        String expected = RTree.maxChildren(4).packer(new PackerHilbert()).create(entries)
+                .asString();
+        for (int threads = 2; threads <= 5; threads++)
+            assertEquals(expected, RTree.maxChildren(4).packer(new PackerHilbert())
+                    .bulkLoadThreads(threads).create(entries).asString());
+    }
+
+    @Test
+    public void testParallelBulkLoadOfFewEntries() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).packer(new PackerHilbert())
+                .bulkLoadThreads(8).create(createRandomEntries(3));
+        assertEquals(1, tree.calculateDepth());
+        assertEquals(3, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testBulkLoadFillsNodes() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create(createRandomEntries(1000));
+        // 250 leaves, 63 parents, 16, 4, 1
+        assertEquals(5, tree.calculateDepth());
+        checkNodeSizes(tree.root().get(), tree.context());
+    }
+
+    @Test
+    public void testBulkLoadedTreeCanBeModified() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(100);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).create(entries);
+        for (Entry<Object, Geometry> entry : entries)
+            tree = tree.delete(entry);
+        assertTrue(tree.isEmpty());
+        tree = tree.add(entries);
+        assertEquals(100, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testBatchAddReturnsSameSearchResultsAsIncrementalAdd() {
+        for (boolean star : new boolean[] { false, true }) {
+            List<Entry<Object, Geometry>> entries = createRandomEntries(1000);
+            RTree.Builder builder = star ? RTree.star().maxChildren(4) : RTree.maxChildren(4);
+            RTree<Object, Geometry> tree = builder.create();
+            for (Entry<Object, Geometry> entry : entries)
+                tree = tree.add(entry);
+            RTree<Object, Geometry> tree2 = builder.<Object, Geometry> create().add(entries);
+            assertEquals(entries.size(), tree2.size());
+            checkMaxChildrenAndDepth(tree2.root().get(), tree2.context(), tree2.calculateDepth());
+            Rectangle r = rectangle(100, 200, 400, 300);
+            assertEquals(new HashSet<Entry<Object, Geometry>>(tree.search(r).toList()
+                    .toBlocking().single()), new HashSet<Entry<Object, Geometry>>(tree2.search(r)
+                    .toList().toBlocking().single()));
+            assertEquals(entries.size(), (int) tree2.entries().count().toBlocking().single());
+        }
+    }
+
+    @Test
+    public void testBatchAddToExistingTreeSharesUntouchedSubtrees() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                createRandomEntries(1000));
+        List<Entry<Object, Geometry>> entries = new ArrayList<Entry<Object, Geometry>>();
+        for (int i = 0; i < 3; i++)
+            entries.add(Entry.<Object, Geometry> entry(new Object(), point(0, i)));
+        RTree<Object, Geometry> tree2 = tree.add(entries);
+        assertEquals(1003, tree2.size());
+        checkMaxChildrenAndDepth(tree2.root().get(), tree2.context(), tree2.calculateDepth());
+        assertEquals(3, (int) tree2.search(rectangle(0, 0, 0, 2)).count().toBlocking().single());
+        // the original tree is unchanged
+        assertEquals(1000, (int) tree.entries().count().toBlocking().single());
+        // entries all went to one corner so most subtrees should be shared
+        Set<Node<Object, Geometry>> nodes = Collections
+                .newSetFromMap(new IdentityHashMap<Node<Object, Geometry>, Boolean>());
+        nodes.addAll(((NonLeaf<Object, Geometry>) tree.root().get()).children());
+        int shared = 0;
+        for (Node<Object, Geometry> child : ((NonLeaf<Object, Geometry>) tree2.root().get())
+                .children())
+            if (nodes.contains(child))
+                shared++;
+        assertTrue(shared > 0);
+    }
+
+    @Test
+    public void testAddObservableInBatches() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(100);
+        List<RTree<Object, Geometry>> trees = RTree.maxChildren(4).<Object, Geometry> create()
+                .add(Observable.from(entries), 30).toList().toBlocking().single();
+        // initial empty tree then one per batch
+        assertEquals(5, trees.size());
+        assertEquals(0, trees.get(0).size());
+        assertEquals(30, trees.get(1).size());
+        assertEquals(100, (int) trees.get(4).entries().count().toBlocking().single());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddObservableInBatchesOfZeroThrows() {
+        RTree.create().add(Observable.<Entry<Object, Geometry>> empty(), 0);
+    }
+
+    @Test
+    public void testSearchWithVisitorReturnsSameResultsAsObservableSearch() {
+        RTree<Object, Point> tree = RTree.star().maxChildren(4).<Object, Point> create().add(
+                GreekEarthquakes.entriesList());
+        for (Rectangle r : Arrays.asList(rectangle(40, 27.0, 40.5, 27.5),
+                rectangle(35, 20, 39, 24), rectangle(0, 0, 1, 1))) {
+            final List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+            int count = tree.search(r, new RTree.Visitor<Object, Point>() {
+                @Override
+                public void visit(Entry<Object, Point> entry) {
+                    list.add(entry);
+                }
+            });
+            assertEquals(list.size(), count);
+            assertEquals(tree.search(r).toList().toBlocking().single(), list);
+        }
+    }
+
+    @Test
+    public void testSearchCursorIsReusable() {
+        RTree<Object, Point> tree = RTree.maxChildren(4).<Object, Point> create().add(
+                GreekEarthquakes.entriesList());
+        SearchCursor<Object, Point> cursor = new SearchCursor<Object, Point>();
+        for (Rectangle r : Arrays.asList(rectangle(40, 27.0, 40.5, 27.5),
+                rectangle(35, 20, 39, 24), rectangle(0, 0, 1, 1))) {
+            List<Entry<Object, Point>> list = new ArrayList<Entry<Object, Point>>();
+            for (Iterator<Entry<Object, Point>> it = tree.search(r, cursor); it.hasNext();)
+                list.add(it.next());
+            assertEquals(tree.search(r).toList().toBlocking().single(), list);
+        }
+        // reposition part way through a search
+        tree.search(rectangle(35, 20, 39, 24), cursor).next();
+        assertFalse(RTree.<Object, Point> create().search(rectangle(35, 20, 39, 24), cursor)
+                .hasNext());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testSearchCursorNextWhenFinishedThrows() {
+        RTree.<Object, Point> create()
+                .search(rectangle(0, 0, 1, 1), new SearchCursor<Object, Point>()).next();
+    }
+
+    @Test
+    public void testQuantizedChildMbrsReturnSameSearchResults() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(1000);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                entries);
+        List<RTree<Object, Geometry>> quantized = new ArrayList<RTree<Object, Geometry>>();
+        RTree<Object, Geometry> added = RTree.maxChildren(4).quantizeChildMbrs().create();
+        for (Entry<Object, Geometry> entry : entries)
+            added = added.add(entry);
+        quantized.add(added);
+        quantized.add(RTree.maxChildren(4).quantizeChildMbrs().<Object, Geometry> create(entries));
+        TransientRTree<Object, Geometry> t = RTree.star().maxChildren(4).quantizeChildMbrs()
+                .<Object, Geometry> create().asTransient();
+        t.add(entries);
+        quantized.add(t.persistent());
+        Rectangle r = rectangle(100, 200, 400, 300);
+        Set<Entry<Object, Geometry>> expected = new HashSet<Entry<Object, Geometry>>(tree
+                .search(r).toList().toBlocking().single());
+        Set<Entry<Object, Geometry>> expectedNear = new HashSet<Entry<Object, Geometry>>(tree
+                .search(r, 20).toList().toBlocking().single());
+        for (RTree<Object, Geometry> q : quantized) {
+            assertTrue(q.context().quantizeChildMbrs());
+            assertEquals(expected,
+                    new HashSet<Entry<Object, Geometry>>(q.search(r).toList().toBlocking()
+                            .single()));
+            assertEquals(expectedNear, new HashSet<Entry<Object, Geometry>>(q.search(r, 20)
+                    .toList().toBlocking().single()));
+            Set<Entry<Object, Geometry>> set = new HashSet<Entry<Object, Geometry>>();
+            q.search(r).subscribe(createBackpressureSubscriber(set));
+            assertEquals(expected, set);
+        }
+    }
+
+    @Test
+    public void testLeafEntryMbrsDoNotChangeSearchResults() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(2000);
+        entries.add(Entry.<Object, Geometry> entry(1, circle(500, 500, 20)));
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                entries);
+        TransientRTree<Object, Geometry> t = RTree.maxChildren(4).leafEntryMbrs()
+                .<Object, Geometry> create().asTransient();
+        t.add(entries);
+        List<RTree<Object, Geometry>> trees = asList(RTree.maxChildren(4).leafEntryMbrs()
+                .<Object, Geometry> create().add(entries), t.persistent());
+        Circle c = circle(400, 400, 150);
+        for (RTree<Object, Geometry> tree2 : trees) {
+            assertTrue(tree2.context().leafEntryMbrs());
+            for (Rectangle r : REGION_QUERIES) {
+                assertEquals(new HashSet<Entry<Object, Geometry>>(tree.search(r).toList()
+                        .toBlocking().single()), new HashSet<Entry<Object, Geometry>>(tree2
+                        .search(r).toList().toBlocking().single()));
+                assertEquals(new HashSet<Entry<Object, Geometry>>(tree.search(r, 10).toList()
+                        .toBlocking().single()), new HashSet<Entry<Object, Geometry>>(tree2
+                        .search(r, 10).toList().toBlocking().single()));
+                assertEquals(tree.count(r), tree2.count(r));
+            }
+            assertEquals(new HashSet<Entry<Object, Geometry>>(tree.search(c).toList()
+                    .toBlocking().single()), new HashSet<Entry<Object, Geometry>>(tree2
+                    .search(c).toList().toBlocking().single()));
+        }
+    }
+
+    @Test
+    public void testCountEqualsSearchCount() {
+        for (RTree<Object, Geometry> tree : createTreesForRegionQueries(
+                createRandomEntries(2000), Optional.<Aggregation<?, ?>> absent())) {
+            assertEquals(tree.size(), tree.root().get().entryCount());
+            for (Rectangle r : REGION_QUERIES)
+                assertEquals((int) tree.search(r).count().toBlocking().single(), tree.count(r));
+        }
+        assertEquals(0, RTree.create().count(r(1)));
+    }
+
+    @Test
+    public void testAggregateEqualsAggregateOfSearchResults() {
+        List<Entry<Integer, Geometry>> entries = new ArrayList<Entry<Integer, Geometry>>();
+        for (int i = 0; i < 2000; i++)
+            entries.add(Entry.<Integer, Geometry> entry(i, random()));
+        for (Aggregation<Number, Double> aggregation : Arrays.<Aggregation<Number, Double>> asList(
+                Aggregations.sum(), Aggregations.min(), Aggregations.max()))
+            for (RTree<Integer, Geometry> tree : createTreesForRegionQueries(entries,
+                    Optional.<Aggregation<?, ?>> of(aggregation)))
+                for (Rectangle r : REGION_QUERIES) {
+                    Double expected = aggregation.empty();
+                    for (Entry<Integer, Geometry> entry : tree.search(r).toBlocking()
+                            .toIterable())
+                        expected = aggregation.combine(expected, aggregation.of(entry.value()));
+                    assertEquals(expected, tree.aggregate(r, aggregation), PRECISION);
+                }
+    }
+
+    @Test
+    public void testNullYieldingAggregationIsMaintainedThroughTransient() {
+        // the first entries have null values so the first nodes built have a
+        // null aggregate
+        List<Entry<Integer, Geometry>> entries = new ArrayList<Entry<Integer, Geometry>>();
+        for (int i = 0; i < 2000; i++)
+            entries.add(Entry.<Integer, Geometry> entry(i < 300 ? null : i, random()));
+        List<RTree<Integer, Geometry>> trees = createTreesForRegionQueries(entries,
+                Optional.<Aggregation<?, ?>> of(MAX_OR_NULL));
+        trees.add(RTree.maxChildren(4).aggregation(MAX_OR_NULL)
+                .<Integer, Geometry> create(entries.subList(0, 300)).asTransient()
+                .add(entries.subList(300, entries.size())).persistent());
+        // a root with two leaves then one add that splits nothing, so no
+        // node aggregate is rebuilt from scratch
+        TransientRTree<Integer, Geometry> t = RTree.maxChildren(4).aggregation(MAX_OR_NULL)
+                .<Integer, Geometry> create().asTransient();
+        for (int i = 0; i < 5; i++)
+            t.add(null, point(i, i));
+        RTree<Integer, Geometry> small = t.add(7, point(2, 2)).persistent();
+        assertEquals(2, small.calculateDepth());
+        assertEquals(Integer.valueOf(7),
+                small.aggregate(rectangle(-1, -1, 10, 10), MAX_OR_NULL));
+        for (RTree<Integer, Geometry> tree : trees)
+            for (Rectangle r : REGION_QUERIES) {
+                Integer expected = MAX_OR_NULL.empty();
+                for (Entry<Integer, Geometry> entry : tree.search(r).toBlocking().toIterable())
+                    expected = MAX_OR_NULL.combine(expected, MAX_OR_NULL.of(entry.value()));
+                assertEquals(expected, tree.aggregate(r, MAX_OR_NULL));
+            }
+    }
+
+    /**
+     * The max of the non-null values, null if there are none.
+     */
+    private static final Aggregation<Integer, Integer> MAX_OR_NULL = new Aggregation<Integer, Integer>() {
+
+        @Override
+        public Integer empty() {
+            return null;
+        }
+
+        @Override
+        public Integer of(Integer value) {
+            return value;
+        }
+
+        @Override
+        public Integer combine(Integer a, Integer b) {
+            if (a == null)
+                return b;
+            else if (b == null)
+                return a;
+            else
+                return Math.max(a, b);
+        }
+    };
+
+    private static final List<Rectangle> REGION_QUERIES = asList(rectangle(100, 200, 800, 700),
+            rectangle(-10, -10, 2000, 2000), rectangle(500, 500, 501, 501),
+            rectangle(-10, -10, -5, -5));
+
+    /**
+     * Returns trees of the entries built in different ways: by single and
+     * batch adds, by adds then deletes, by bulk loading and through a
+     * transient tree.
+     */
+    private static <T> List<RTree<T, Geometry>> createTreesForRegionQueries(
+            List<Entry<T, Geometry>> entries, Optional<Aggregation<?, ?>> aggregation) {
+        List<RTree<T, Geometry>> trees = new ArrayList<RTree<T, Geometry>>();
+        RTree<T, Geometry> added = withAggregation(RTree.maxChildren(4), aggregation)
+                .<T, Geometry> create();
+        for (Entry<T, Geometry> entry : entries.subList(0, 200))
+            added = added.add(entry);
+        added = added.add(entries.subList(200, entries.size()));
+        trees.add(added);
+        trees.add(added.delete(entries.subList(0, 500)));
+        trees.add(withAggregation(RTree.star().maxChildren(8), aggregation)
+                .<T, Geometry> create(entries));
+        TransientRTree<T, Geometry> t = withAggregation(RTree.maxChildren(4), aggregation)
+                .<T, Geometry> create().asTransient();
+        t.add(entries);
+        trees.add(t.persistent());
+        return trees;
+    }
+
+    private static RTree.Builder withAggregation(RTree.Builder builder,
+            Optional<Aggregation<?, ?>> aggregation) {
+        if (aggregation.isPresent())
+            return builder.aggregation(aggregation.get());
+        else
+            return builder;
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAggregateWithoutAggregationThrows() {
+        RTree.<Integer, Point> create().add(1, point(1, 1))
+                .aggregate(r(1), Aggregations.<Integer> sum());
+    }
+
+    @Test
+    public void testJoinReturnsSameResultsAsNestedLoops() {
+        // dense enough that there are always many intersecting pairs
+        List<Entry<Object, Geometry>> entriesA = createRandomEntries(3000);
+        List<Entry<Object, Geometry>> entriesB = createRandomEntries(1000);
+        Set<EntryPair<Object, Geometry, Object, Geometry>> expected = new HashSet<EntryPair<Object, Geometry, Object, Geometry>>();
+        for (Entry<Object, Geometry> a : entriesA)
+            for (Entry<Object, Geometry> b : entriesB)
+                if (a.geometry().intersects(b.geometry().mbr()))
+                    expected.add(new EntryPair<Object, Geometry, Object, Geometry>(a, b));
+        assertFalse(expected.isEmpty());
+        // trees of different heights
+        RTree<Object, Geometry> a = RTree.maxChildren(4).<Object, Geometry> create().add(entriesA);
+        RTree<Object, Geometry> b = RTree.star().maxChildren(32).<Object, Geometry> create(
+                entriesB);
+        for (boolean planeSweep : new boolean[] { false, true }) {
+            List<EntryPair<Object, Geometry, Object, Geometry>> list = a
+                    .join(b, GEOMETRIES_INTERSECT, planeSweep).toList().toBlocking().single();
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected, new HashSet<EntryPair<Object, Geometry, Object, Geometry>>(
+                    list));
+            Set<EntryPair<Object, Geometry, Object, Geometry>> reversed = new HashSet<EntryPair<Object, Geometry, Object, Geometry>>();
+            for (EntryPair<Object, Geometry, Object, Geometry> pair : b
+                    .join(a, GEOMETRIES_INTERSECT, planeSweep).toBlocking().toIterable())
+                reversed.add(new EntryPair<Object, Geometry, Object, Geometry>(pair.right(), pair
+                        .left()));
+            assertEquals(expected, reversed);
+        }
+    }
+
+    @Test
+    public void testJoinPointsWithCircles() {
+        RTree<Object, Point> points = RTree.maxChildren(4).create();
+        for (int i = 0; i < 10; i++)
+            points = points.add(i, point(i, 0));
+        RTree<Object, Circle> circles = RTree.<Object, Circle> create().add(1, circle(2, 1, 1.5))
+                .add(2, circle(8, 0, 0.5));
+        List<EntryPair<Object, Point, Object, Circle>> list = points
+                .join(circles, pointIntersectsCircle, true).toList().toBlocking().single();
+        Set<Object> values = new HashSet<Object>();
+        for (EntryPair<Object, Point, Object, Circle> pair : list)
+            values.add(pair.left().value() + "-" + pair.right().value());
+        assertEquals(Sets.<Object> newHashSet("1-1", "2-1", "3-1", "8-2"), values);
+    }
+
+    @Test
+    public void testJoinWithEmptyTreeAndBackpressure() {
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 100; i++)
+            tree = tree.add(e(i));
+        assertTrue(tree.join(RTree.<Object, Rectangle> create(), GEOMETRIES_INTERSECT).isEmpty()
+                .toBlocking().single());
+        Set<EntryPair<Object, Rectangle, Object, Rectangle>> set = new HashSet<EntryPair<Object, Rectangle, Object, Rectangle>>();
+        tree.join(tree, GEOMETRIES_INTERSECT).subscribe(createBackpressureSubscriber(set));
+        // each entry intersects itself and its neighbours
+        assertEquals(100 + 2 * 99, set.size());
+    }
+
+    @Test
+    public void testSelfJoinReturnsEachPairWithinDistanceOnce() {
+        List<Entry<Integer, Point>> entries = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 2000; i++)
+            entries.add(Entry.entry(i, point(Math.random() * 1000, Math.random() * 1000)));
+        final double d = 10;
+        Set<String> expected = new HashSet<String>();
+        for (int i = 0; i < entries.size(); i++)
+            for (int j = i + 1; j < entries.size(); j++)
+                if (entries.get(i).geometry().distance(entries.get(j).geometry().mbr()) < d)
+                    expected.add(i + "-" + j);
+        assertFalse(expected.isEmpty());
+        RTree<Integer, Point> tree = RTree.maxChildren(4).<Integer, Point> create().add(entries);
+        List<Observable<EntryPair<Integer, Point, Integer, Point>>> joins = asList(
+                tree.selfJoin(d), tree.selfJoin(d, Schedulers.computation(), 1),
+                tree.selfJoin(d, Schedulers.computation(), 16),
+                tree.selfJoin(d, Schedulers.computation(), 100000));
+        for (Observable<EntryPair<Integer, Point, Integer, Point>> join : joins) {
+            List<String> list = new ArrayList<String>();
+            for (EntryPair<Integer, Point, Integer, Point> pair : join.toBlocking().toIterable())
+                list.add(Math.min(pair.left().value(), pair.right().value()) + "-"
+                        + Math.max(pair.left().value(), pair.right().value()));
+            assertEquals(expected.size(), list.size());
+            assertEquals(expected, new HashSet<String>(list));
+        }
+    }
+
+    @Test
+    public void testSelfJoinPairsDuplicateEntriesButNotAnEntryWithItself() {
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create().add(e(1)).add(e(1))
+                .add(e(5));
+        assertEquals(asList(new EntryPair<Object, Rectangle, Object, Rectangle>(e(1), e(1))), tree
+                .selfJoin(0.5).toList().toBlocking().single());
+        assertTrue(RTree.create().selfJoin(1).isEmpty().toBlocking().single());
+    }
+
+    @Test
+    public void testNearestJoinFindsSameDistancesAsNearestPerEntry() {
+        List<Entry<Integer, Point>> entriesA = new ArrayList<Entry<Integer, Point>>();
+        for (int i = 0; i < 500; i++)
+            entriesA.add(Entry.entry(i, point(Math.random() * 1000, Math.random() * 1000)));
+        RTree<Integer, Point> a = RTree.maxChildren(4).<Integer, Point> create().add(entriesA);
+        RTree<Object, Geometry> b = RTree.star().maxChildren(8).<Object, Geometry> create(
+                createRandomEntries(1000));
+        final int k = 5;
+        // compare distances as ties may be broken differently
+        Map<Integer, List<Double>> expected = new HashMap<Integer, List<Double>>();
+        for (Entry<Integer, Point> e : entriesA) {
+            List<Double> distances = new ArrayList<Double>();
+            for (Entry<Object, Geometry> n : b.nearest(e.geometry().mbr(), k).toBlocking()
+                    .toIterable())
+                distances.add(n.geometry().distance(e.geometry().mbr()));
+            expected.put(e.value(), distances);
+        }
+        List<Observable<EntryPair<Integer, Point, Object, Geometry>>> joins = asList(
+                a.nearestJoin(b, k), a.nearestJoin(b, k, Schedulers.computation(), 1),
+                a.nearestJoin(b, k, Schedulers.computation(), 7),
+                a.nearestJoin(b, k, Schedulers.computation(), 100000));
+        for (Observable<EntryPair<Integer, Point, Object, Geometry>> join : joins) {
+            Map<Integer, List<Double>> found = new HashMap<Integer, List<Double>>();
+            for (EntryPair<Integer, Point, Object, Geometry> pair : join.toBlocking()
+                    .toIterable()) {
+                if (!found.containsKey(pair.left().value()))
+                    found.put(pair.left().value(), new ArrayList<Double>());
+                found.get(pair.left().value()).add(
+                        pair.right().geometry().distance(pair.left().geometry().mbr()));
+            }
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testNearestJoinWithFewerEntriesThanMaxCountAndEmptyTrees() {
+        RTree<Object, Rectangle> a = RTree.maxChildren(4).create();
+        for (int i = 0; i < 20; i++)
+            a = a.add(e(i));
+        RTree<Object, Rectangle> b = RTree.<Object, Rectangle> create().add(e(3)).add(e(30));
+        List<EntryPair<Object, Rectangle, Object, Rectangle>> list = a.nearestJoin(b, 5).toList()
+                .toBlocking().single();
+        assertEquals(40, list.size());
+        // the pairs of an entry are consecutive, nearest first
+        int i = list.indexOf(new EntryPair<Object, Rectangle, Object, Rectangle>(e(0), e(3)));
+        assertEquals(new EntryPair<Object, Rectangle, Object, Rectangle>(e(0), e(30)),
+                list.get(i + 1));
+        assertTrue(a.nearestJoin(b, 0).isEmpty().toBlocking().single());
+        assertTrue(a.nearestJoin(RTree.<Object, Rectangle> create(), 5).isEmpty().toBlocking()
+                .single());
+        assertTrue(RTree.<Object, Rectangle> create().nearestJoin(b, 5, Schedulers.computation(), 4)
+                .isEmpty().toBlocking().single());
+    }
+
+    private static final Func2<Geometry, Geometry, Boolean> GEOMETRIES_INTERSECT = new Func2<Geometry, Geometry, Boolean>() {
+        @Override
+        public Boolean call(Geometry a, Geometry b) {
+            return a.intersects(b.mbr());
+        }
+    };
+
+    @Test
+    public void testBatchSearchReturnsSameResultsAsSeparateSearches() {
+        List<Entry<Object, Geometry>> entries = createRandomEntries(1000);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                entries);
+        List<Rectangle> queries = new ArrayList<Rectangle>();
+        for (int i = 0; i < 50; i++) {
+            double x = Math.random() * 1000;
+            double y = Math.random() * 1000;
+            queries.add(rectangle(x, y, x + Math.random() * 100, y + Math.random() * 100));
+        }
+        // a duplicate and a query matching nothing
+        queries.add(queries.get(0));
+        queries.add(rectangle(-10, -10, -5, -5));
+        Set<IndexedEntry<Object, Geometry>> expected = new HashSet<IndexedEntry<Object, Geometry>>();
+        for (int i = 0; i < queries.size(); i++)
+            for (Entry<Object, Geometry> entry : tree.search(queries.get(i)).toBlocking()
+                    .toIterable())
+                expected.add(new IndexedEntry<Object, Geometry>(i, entry));
+        List<IndexedEntry<Object, Geometry>> list = tree.search(queries).toList().toBlocking()
+                .single();
+        assertEquals(expected.size(), list.size());
+        assertEquals(expected, new HashSet<IndexedEntry<Object, Geometry>>(list));
+    }
+
+    @Test
+    public void testBatchSearchOfEmptyTreeOrNoQueries() {
+        RTree<Object, Rectangle> tree = RTree.create();
+        assertTrue(tree.search(Arrays.asList(r(1))).isEmpty().toBlocking().single());
+        assertTrue(tree.add(e(1)).search(Collections.<Rectangle> emptyList()).isEmpty()
+                .toBlocking().single());
+    }
+
+    @Test
+    public void testBatchSearchSupportsBackpressure() {
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 100; i++)
+            tree = tree.add(e(i));
+        List<Rectangle> queries = Arrays.asList(rectangle(10, 10, 20, 20),
+                rectangle(15, 15, 40, 40));
+        Set<IndexedEntry<Object, Rectangle>> set = new HashSet<IndexedEntry<Object, Rectangle>>();
+        tree.search(queries).subscribe(createBackpressureSubscriber(set));
+        // entries 9..20 touch the first query, 14..40 the second
+        assertEquals(12 + 27, set.size());
+        assertTrue(set.contains(new IndexedEntry<Object, Rectangle>(1, e(40))));
+    }
+
+    @Test
+    public void testParallelSearchReturnsSameResultsAsSequentialSearch() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create().add(
+                createRandomEntries(10000));
+        for (Rectangle r : asList(rectangle(100, 200, 800, 700), rectangle(500, 500, 501, 501),
+                rectangle(-10, -10, -5, -5))) {
+            Set<Entry<Object, Geometry>> expected = new HashSet<Entry<Object, Geometry>>(tree
+                    .search(r).toList().toBlocking().single());
+            for (int threshold : new int[] { 1, 4, 16, 100000 }) {
+                List<Entry<Object, Geometry>> list = tree
+                        .search(r, Schedulers.computation(), threshold).toList().toBlocking()
+                        .single();
+                assertEquals(expected.size(), list.size());
+                assertEquals(expected, new HashSet<Entry<Object, Geometry>>(list));
+            }
+        }
+    }
+
+    @Test
+    public void testBackpressureSearchCompletesOnceWithoutUnsubscribing() {
+        RTree<Object, Rectangle> tree = RTree.maxChildren(4).create();
+        for (int i = 0; i < 10; i++)
+            tree = tree.add(e(i));
+        final List<Object> events = new ArrayList<Object>();
+        // unsafeSubscribe so that onCompleted does not unsubscribe
+        tree.search(rectangle(0, 0, 4, 4)).unsafeSubscribe(new Subscriber<Entry<Object, Rectangle>>() {
+
+            @Override
+            public void onStart() {
+                request(1);
+            }
+
+            @Override
+            public void onCompleted() {
+                events.add("completed");
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                events.add(e);
+            }
+
+            @Override
+            public void onNext(Entry<Object, Rectangle> entry) {
+                events.add(entry);
+                request(1);
+            }
+        });
+        assertEquals(asList(e(0), e(1), e(2), e(3), e(4), "completed"), events);
+    }
+
+    @Test
+    public void testParallelSearchOfSmallTrees() {
+        assertTrue(RTree.<Object, Geometry> create().search(r(1), Schedulers.computation(), 1)
+                .isEmpty().toBlocking().single());
+        RTree<Object, Rectangle> tree = RTree.<Object, Rectangle> create().add(e(1));
+        assertEquals(asList(e(1)), tree.search(r(1), Schedulers.computation(), 1).toList()
+                .toBlocking().single());
+    }
+
+    @Test
+    public void testDoublePrecisionPointsAreSearchedExactly() {
+        // these longitudes are equal as floats
+        PointDouble p1 = Geometries.pointDouble(23.12345671, 37.5);
+        PointDouble p2 = Geometries.pointDouble(23.12345679, 37.5);
+        RTree<Object, PointDouble> tree = RTree.maxChildren(4).<Object, PointDouble> create();
+        for (int i = 0; i < 20; i++)
+            tree = tree.add(i, Geometries.pointDouble(20 + i, 30 + i));
+        tree = tree.add(1, p1).add(2, p2);
+        RectangleDouble r = Geometries.rectangleDouble(23.12345675, 37, 24, 38);
+        assertEquals(Arrays.asList(p2),
+                geometries(tree.search(r, Intersects.pointDoubleIntersectsRectangleDouble)));
+        // a float search rectangle is compared exactly with the double points
+        assertEquals(Sets.newHashSet(p1, p2),
+                Sets.newHashSet(geometries(tree.search(Geometries.rectangle(23, 37, 23.5, 38)))));
+        assertEquals(Arrays.asList(p2), geometries(tree.nearest(Geometries.point(24, 37.5), 0.9, 1)));
+    }
+
+    private static <S extends Geometry> List<S> geometries(Observable<Entry<Object, S>> entries) {
+        return entries.map(new Func1<Entry<Object, S>, S>() {
+            @Override
+            public S call(Entry<Object, S> entry) {
+                return entry.geometry();
+            }
+        }).toList().toBlocking().single();
+    }
+
+    private static <T, S extends Geometry> void checkMaxChildrenAndDepth(Node<T, S> node,
+            Context context, int depth) {
+        assertTrue(node.count() <= context.maxChildren());
+        if (node instanceof NonLeaf)
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                checkMaxChildrenAndDepth(child, context, depth - 1);
+        else
+            assertEquals(1, depth);
+    }
+
+    private static <T, S extends Geometry> void checkNodeSizes(Node<T, S> node, Context context) {
+        assertTrue(node.count() <= context.maxChildren());
+        assertTrue(node.count() >= context.minChildren());
+        if (node instanceof NonLeaf)
+            for (Node<T, S> child : ((NonLeaf<T, S>) node).children())
+                checkNodeSizes(child, context);
+    }
+
     private static Func2<Point, Circle, Double> distanceCircleToPoint = new Func2<Point, Circle, Double>() {
         @Override
         public Double call(Point point, Circle circle) {
@@ -168,4 +168,13 @@ public class RectangleTest {
         assertFalse(r.contains(9,30));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testContainsRectangle() {
+        Rectangle r = rectangle(10, 20, 30, 40);
+        assertTrue(r.contains(r));
+        assertTrue(r.contains(rectangle(15, 25, 20, 40)));
+        assertFalse(r.contains(rectangle(5, 25, 20, 30)));
+        assertFalse(r.contains(rectangle(15, 25, 20, 41)));
+    }
+
+}
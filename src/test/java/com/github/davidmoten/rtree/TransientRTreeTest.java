@@ -0,0 +1,120 @@
+package com.github.davidmoten.rtree;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.davidmoten.rtree.geometry.Geometry;
+import com.github.davidmoten.rtree.geometry.Rectangle;
+
+public class TransientRTreeTest {
+
+    @Test
+    public void testTransientReturnsSameSearchResultsAsPersistentAdd() {
+        for (RTree.Builder builder : new RTree.Builder[] { RTree.maxChildren(4),
+                RTree.star().maxChildren(4) }) {
+            List<Entry<Object, Geometry>> entries = RTreeTest.createRandomEntries(1000);
+            RTree<Object, Geometry> tree = builder.create();
+            for (Entry<Object, Geometry> entry : entries)
+                tree = tree.add(entry);
+            RTree<Object, Geometry> tree2 = builder.<Object, Geometry> create().asTransient()
+                    .add(entries).persistent();
+            assertEquals(1000, tree2.size());
+            assertEquals(1000, (int) tree2.entries().count().toBlocking().single());
+            checkNodes(tree2.root().get(), tree2.context(), tree2.calculateDepth());
+            Rectangle r = rectangle(100, 200, 400, 300);
+            assertEquals(search(tree, r), search(tree2, r));
+        }
+    }
+
+    @Test
+    public void testTransientDoesNotModifyOriginalTree() {
+        RTree<Object, Geometry> tree = RTreeTest.createRandomRTree(100);
+        Rectangle r = rectangle(0, 0, 1000, 1000);
+        HashSet<Entry<Object, Geometry>> before = search(tree, r);
+        TransientRTree<Object, Geometry> t = tree.asTransient();
+        t.add(RTreeTest.createRandomEntries(1000));
+        assertEquals(1100, t.size());
+        assertEquals(before, search(tree, r));
+        assertEquals(100, tree.size());
+        RTree<Object, Geometry> tree2 = t.persistent();
+        assertEquals(1100, (int) tree2.entries().count().toBlocking().single());
+        assertTrue(search(tree2, r).containsAll(before));
+    }
+
+    @Test
+    public void testTransientOfFrozenTreeDoesNotModifyFrozenTree() {
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create()
+                .asTransient().add(RTreeTest.createRandomEntries(100)).persistent();
+        RTree<Object, Geometry> tree2 = tree.asTransient().add(RTreeTest.createRandomEntries(100))
+                .persistent();
+        assertEquals(100, (int) tree.entries().count().toBlocking().single());
+        assertEquals(200, (int) tree2.entries().count().toBlocking().single());
+    }
+
+    @Test
+    public void testPersistentTreeCanBeModified() {
+        List<Entry<Object, Geometry>> entries = RTreeTest.createRandomEntries(100);
+        RTree<Object, Geometry> tree = RTree.maxChildren(4).<Object, Geometry> create()
+                .asTransient().add(entries).persistent();
+        RTree<Object, Geometry> tree2 = tree.delete(entries).add(entries.get(0));
+        assertEquals(1, (int) tree2.entries().count().toBlocking().single());
+        assertEquals(100, (int) tree.entries().count().toBlocking().single());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAddAfterPersistentThrows() {
+        TransientRTree<Object, Geometry> t = RTree.create().asTransient();
+        t.persistent();
+        t.add(RTreeTest.randomEntry());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPersistentTwiceThrows() {
+        TransientRTree<Object, Geometry> t = RTree.create().asTransient();
+        t.persistent();
+        t.persistent();
+    }
+
+    @Test
+    public void testNodesOfPersistentTreesHaveOnlyFinalFields() {
+        // final fields make a tree safe to publish to other threads without
+        // synchronization, so in-place edits must not touch Leaf or NonLeaf
+        for (Class<?> cls : new Class<?>[] { Leaf.class, NonLeaf.class })
+            for (Field field : cls.getDeclaredFields())
+                if (!field.isSynthetic())
+                    assertTrue(cls.getSimpleName() + "." + field.getName(),
+                            Modifier.isFinal(field.getModifiers()));
+    }
+
+    private static HashSet<Entry<Object, Geometry>> search(RTree<Object, Geometry> tree,
+            Rectangle r) {
+        return new HashSet<Entry<Object, Geometry>>(tree.search(r).toList().toBlocking()
+                .single());
+    }
+
+    private static void checkNodes(Node<Object, Geometry> node, Context context, int depth) {
+        assertTrue(node.count() <= context.maxChildren());
+        if (node instanceof NonLeaf) {
+            Rectangle mbr = null;
+            for (Node<Object, Geometry> child : ((NonLeaf<Object, Geometry>) node).children()) {
+                checkNodes(child, context, depth - 1);
+                mbr = mbr == null ? child.geometry().mbr() : mbr.add(child.geometry().mbr());
+            }
+            // the mbr maintained in place must match the children
+            assertEquals(mbr, node.geometry().mbr());
+        } else {
+            assertEquals(1, depth);
+            assertEquals(Util.mbr(((Leaf<Object, Geometry>) node).entries()), node.geometry()
+                    .mbr());
+        }
+    }
+
+}
@@ -1,5 +1,10 @@
 package com.github.davidmoten.rtree;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.Test;
 
 import com.github.davidmoten.util.TestingUtil;
@@ -11,4 +16,16 @@ public class UtilTest {
         TestingUtil.callConstructorAndCheckIsPrivate(Util.class);
     }
 
+    @Test
+    public void testPartitionSpreadsRemainder() {
+        List<List<Integer>> groups = Util.partition(Arrays.asList(1, 2, 3, 4, 5, 6, 7), 3);
+        assertEquals(Arrays.asList(Arrays.asList(1, 2, 3), Arrays.asList(4, 5),
+                Arrays.asList(6, 7)), groups);
+    }
+
+    @Test
+    public void testPartitionOfEmptyList() {
+        assertEquals(0, Util.partition(Arrays.<Integer> asList(), 3).size());
+    }
+
 }
@@ -114,6 +114,27 @@ public class CircleTest {
         assertFalse(a.intersects(b));
     }
     
+    @Test
+    public void testIntersectsRectangleNearCorner() {
+        Circle circle = circle(0, 0, 1);
+        assertTrue(circle.intersects(Geometries.rectangle(0.7, 0.7, 2, 2)));
+        assertFalse(circle.intersects(Geometries.rectangle(0.8, 0.8, 2, 2)));
+        assertTrue(circle.intersects(Geometries.rectangle(-2, -0.5, -1, 0.5)));
+        assertEquals(Math.sqrt(0.32) - 0.25, circle(1, 1, 0.25).distance(
+                Geometries.rectangle(-1, -1, 0.6, 0.6)), PRECISION);
+    }
+
+    @Test
+    public void testTouchingCirclesIntersect() {
+        assertTrue(circle(0, 0, 1).intersects(circle(3, 0, 2)));
+        assertFalse(circle(0, 0, 1).intersects(circle(3, 0, 1.5)));
+    }
+
+    @Test
+    public void testRadius() {
+        assertEquals(3, circle(1, 2, 3).radius(), PRECISION);
+    }
+
     @Test
     public void testIntersectsPoint() {
         assertTrue(circle(0,0,1).intersects(Geometries.point(0,0)));
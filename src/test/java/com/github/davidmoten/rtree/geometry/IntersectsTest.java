@@ -26,4 +26,12 @@ public class IntersectsTest {
         assertFalse(Intersects.rectangleIntersectsCircle.call(rectangle(0, 0, 0, 0), circle(100, 100, 1)));
     }
     
+    @Test
+    public void testPointDoubleIntersectsRectangleDouble() {
+        assertTrue(Intersects.pointDoubleIntersectsRectangleDouble.call(
+                Geometries.pointDouble(1, 1), Geometries.rectangleDouble(0, 0, 1, 1)));
+        assertFalse(Intersects.pointDoubleIntersectsRectangleDouble.call(
+                Geometries.pointDouble(1.000000001, 1), Geometries.rectangleDouble(0, 0, 1, 1)));
+    }
+
 }
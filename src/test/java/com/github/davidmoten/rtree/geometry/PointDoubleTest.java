@@ -0,0 +1,69 @@
+package com.github.davidmoten.rtree.geometry;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.pointDouble;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangleDouble;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PointDoubleTest {
+
+    private static final double PRECISION = 0.000001;
+
+    @Test
+    public void testCoordinatesKeepDoublePrecision() {
+        PointDouble p = pointDouble(23.123456789, 37.987654321);
+        assertEquals(23.123456789, p.x(), 0);
+        assertEquals(37.987654321, p.y(), 0);
+    }
+
+    @Test
+    public void testMbrContainsPoint() {
+        PointDouble p = pointDouble(23.123456789, 37.987654321);
+        Rectangle r = p.mbr();
+        assertTrue(r.x1() <= p.x() && p.x() <= r.x2());
+        assertTrue(r.y1() <= p.y() && p.y() <= r.y2());
+        // only one float either side
+        assertEquals(Math.ulp(r.x1()), r.x2() - r.x1(), 0);
+    }
+
+    @Test
+    public void testMbrOfFloatIsExact() {
+        assertEquals(rectangle(1, 2, 1, 2), pointDouble(1, 2).mbr());
+    }
+
+    @Test
+    public void testIntersectsDistinguishesPointsThatAreEqualAsFloats() {
+        PointDouble p1 = pointDouble(23.1234567, 37.0);
+        PointDouble p2 = pointDouble(23.1234568, 37.0);
+        assertEquals((float) p1.x(), (float) p2.x(), 0);
+        RectangleDouble r = rectangleDouble(23.12345675, 36, 24, 38);
+        assertFalse(p1.intersects(r));
+        assertTrue(p2.intersects(r));
+    }
+
+    @Test
+    public void testDistanceToRectangle() {
+        PointDouble p = pointDouble(1, 2);
+        assertEquals(5, p.distance(rectangle(4, 6, 5, 7)), PRECISION);
+        assertEquals(5, p.distance(rectangleDouble(4, 6, 5, 7)), PRECISION);
+        assertEquals(0, p.distance(rectangle(0, 0, 5, 7)), PRECISION);
+    }
+
+    @Test
+    public void testDistanceToPoint() {
+        assertEquals(5, pointDouble(1, 2).distance(pointDouble(4, 6)), PRECISION);
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        assertEquals(pointDouble(1, 2), pointDouble(1, 2));
+        assertEquals(pointDouble(1, 2).hashCode(), pointDouble(1, 2).hashCode());
+        assertNotEquals(pointDouble(1, 2), pointDouble(1, 2.0000000001));
+        assertFalse(pointDouble(1, 2).equals(null));
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.davidmoten.rtree.geometry;
+
+import static com.github.davidmoten.rtree.geometry.Geometries.circleDouble;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangle;
+import static com.github.davidmoten.rtree.geometry.Geometries.rectangleDouble;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RectangleDoubleTest {
+
+    private static final double PRECISION = 0.000001;
+
+    @Test
+    public void testMbrRoundsOutwards() {
+        RectangleDouble r = rectangleDouble(-0.1, -0.1, 0.1, 0.1);
+        Rectangle mbr = r.mbr();
+        assertTrue(mbr.x1() <= -0.1 && mbr.y1() <= -0.1);
+        assertTrue(mbr.x2() >= 0.1 && mbr.y2() >= 0.1);
+    }
+
+    @Test
+    public void testFloatRounding() {
+        assertTrue(RectangleDouble.floatBelow(0.1) < 0.1);
+        assertTrue(RectangleDouble.floatAbove(0.1) > 0.1);
+        assertEquals(0.5f, RectangleDouble.floatBelow(0.5), 0);
+        assertEquals(0.5f, RectangleDouble.floatAbove(0.5), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreateWithMinGreaterThanMaxThrows() {
+        rectangleDouble(1, 0, 0, 1);
+    }
+
+    @Test
+    public void testIntersects() {
+        RectangleDouble r = rectangleDouble(0, 0, 1, 1);
+        assertTrue(r.intersects(rectangleDouble(1, 1, 2, 2)));
+        assertFalse(r.intersects(rectangleDouble(1.0000000001, 0, 2, 2)));
+        assertTrue(r.intersects(rectangle(0.5, 0.5, 2, 2)));
+        assertFalse(r.intersects(rectangle(0, 1.5, 2, 2)));
+    }
+
+    @Test
+    public void testDistance() {
+        RectangleDouble r = rectangleDouble(0, 0, 1, 1);
+        assertEquals(0, r.distance(rectangle(0.5, 0.5, 2, 2)), PRECISION);
+        assertEquals(5, r.distance(rectangleDouble(4, 5, 6, 7)), PRECISION);
+    }
+
+    @Test
+    public void testCircleDoubleIntersects() {
+        CircleDouble c = circleDouble(0, 0, 1);
+        assertTrue(c.intersects(rectangleDouble(0.7, 0.7, 2, 2)));
+        assertFalse(c.intersects(rectangleDouble(0.71, 0.71, 2, 2)));
+        assertTrue(c.intersects(circleDouble(2, 0, 1)));
+        assertFalse(c.intersects(circleDouble(2, 0, 0.999999999)));
+        assertEquals(rectangle(-1, -1, 1, 1), c.mbr());
+    }
+
+    @Test
+    public void testEquals() {
+        assertEquals(rectangleDouble(0, 0, 1, 1), rectangleDouble(0, 0, 1, 1));
+        assertFalse(rectangleDouble(0, 0, 1, 1).equals(rectangleDouble(0, 0, 1, 2)));
+        assertFalse(rectangleDouble(0, 0, 1, 1).equals(null));
+    }
+}